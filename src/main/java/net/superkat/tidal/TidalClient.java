@@ -5,6 +5,7 @@ import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientWorldEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.particle.v1.ParticleFactoryRegistry;
 import net.fabricmc.fabric.api.client.rendering.v1.InvalidateRenderStateCallback;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
@@ -30,11 +31,14 @@ import net.superkat.tidal.particles.debug.DebugWaterParticle;
 import net.superkat.tidal.particles.debug.DebugWaveMovementParticle;
 import net.superkat.tidal.particles.old.WaveParticle;
 import net.superkat.tidal.particles.old.WhiteWaveParticle;
+import net.superkat.tidal.renderer.WetOverlayMesh;
+import net.superkat.tidal.scan.ShoreCache;
 import net.superkat.tidal.sprite.TidalSpriteHandler;
 
 public class TidalClient implements ClientModInitializer {
 
     public static TidalSpriteHandler TIDAL_SPRITE_HANDLER = new TidalSpriteHandler();
+    public static WetOverlayMesh WET_OVERLAY_MESH = new WetOverlayMesh();
 
     @Override
     public void onInitializeClient() {
@@ -92,7 +96,8 @@ public class TidalClient implements ClientModInitializer {
             tidalWorld.tidal$tidalWaveHandler().render(buffer, context);
 
             BuiltBuffer builtBuffer = buffer.endNullable();
-            if(builtBuffer == null) return;
+            boolean wet = !tidalWorld.tidal$tidalWaveHandler().wetness.isEmpty();
+            if(builtBuffer == null && !wet) return;
 
             LightmapTextureManager lightmapTextureManager = MinecraftClient.getInstance().gameRenderer.getLightmapTextureManager();
 
@@ -105,7 +110,9 @@ public class TidalClient implements ClientModInitializer {
             RenderSystem.enableBlend();
             RenderSystem.defaultBlendFunc();
 
-            BufferRenderer.drawWithGlobalProgram(builtBuffer);
+            if(builtBuffer != null) BufferRenderer.drawWithGlobalProgram(builtBuffer);
+            // cached mesh, drawn with the same shader & atlas
+            tidalWorld.tidal$tidalWaveHandler().renderer.renderWetOverlay(context);
 
             RenderSystem.depthMask(true);
             RenderSystem.disableBlend();
@@ -114,8 +121,14 @@ public class TidalClient implements ClientModInitializer {
 
         ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(TIDAL_SPRITE_HANDLER);
 
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+            ShoreCache.closeAll();
+        });
+
         ClientLifecycleEvents.CLIENT_STOPPING.register(client -> {
             TIDAL_SPRITE_HANDLER.clearAtlas();
+            WET_OVERLAY_MESH.close();
+            ShoreCache.closeAll();
         });
 
     }
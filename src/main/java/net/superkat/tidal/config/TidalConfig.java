@@ -12,6 +12,15 @@ public class TidalConfig extends MidnightConfig {
     @Comment(category = WAVES, centered = true) public static Comment reloadReminder;
     @Entry(category = WAVES, isSlider = true, min = 3, max = 16) public static int chunkRadius = 5;
     @Entry(category = WAVES, min = 1, max = 1024) public static int chunkUpdatesRescanAmount = 50;
+    @Entry(category = WAVES, isSlider = true, min = 1, max = 20) public static int blockUpdateInterval = 4;
+    @Entry(category = WAVES) public static ScanMode scanMode = ScanMode.ASYNC;
+    @Entry(category = WAVES, isSlider = true, min = 1, max = 20) public static int scanBudgetMs = 2;
+    @Entry(category = WAVES) public static boolean lodScanning = true;
+    @Entry(category = WAVES, isSlider = true, min = 2, max = 16) public static int lodInnerRadius = 5;
+    @Entry(category = WAVES) public static boolean openOceanTiles = true;
+    @Entry(category = WAVES, min = 16, max = 128) public static int openOceanDistance = 32; // should stay well above waveDistFromShore
+    @Entry(category = WAVES, min = 0, max = 1200) public static int wetTicks = 200; // 0 to disable the wet overlay
+    @Entry(category = WAVES, isSlider = true, min = 1, max = 64) public static int maxWaveSpawnsPerTick = 8;
 
     @Entry(category = WAVES) public static boolean debug = false;
     @Comment(category = WAVES, centered = true) public static Comment debugDocs;
@@ -23,6 +32,13 @@ public class TidalConfig extends MidnightConfig {
 
     public static int waveTicks = 80; // dummy value
     public static int waveDistFromShore = 8;
+    public static int siteSearchChunkRadius = 4; // max chunks away a water block's closest site can be
 
     public static boolean modEnabled = true; // unused for now because no time
+
+    public enum ScanMode {
+        ASYNC, // scans run on Tidal's scan threads
+        BUDGETED, // scans & builds run on the main thread, for at most scanBudgetMs per tick - for low core count machines
+        HYBRID // scans run on the main thread for half of scanBudgetMs per tick, and the other half hands the next scans to the scan threads
+    }
 }
@@ -4,15 +4,12 @@ import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.render.BufferBuilder;
 import net.minecraft.client.render.Camera;
-import net.minecraft.client.render.LightmapTextureManager;
 import net.minecraft.client.render.RenderLayer;
 import net.minecraft.client.render.VertexConsumer;
 import net.minecraft.client.render.WorldRenderer;
 import net.minecraft.client.texture.Sprite;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.client.world.ClientWorld;
-import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.Box;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.RotationAxis;
 import net.minecraft.util.math.Vec3d;
@@ -20,17 +17,15 @@ import net.superkat.tidal.TidalClient;
 import net.superkat.tidal.sprite.TidalSpriteHandler;
 import net.superkat.tidal.sprite.TidalSprites;
 import net.superkat.tidal.wave.TidalWaveHandler;
-import net.superkat.tidal.wave.Wave;
+import net.superkat.tidal.wave.WavePool;
 import org.joml.Matrix4f;
 
-import java.util.List;
-import java.util.Set;
 
 /**
  * THE WAVES AREN'T ENTITIES!!!!!!!!!!!!!!!!!!!!!!!!!!!
  * They just have custom hitbox rendering lol
  *
- * @see WaveRenderer#renderDebugHitboxes(WorldRenderContext, List, Camera)
+ * @see WaveRenderer#renderDebugHitboxes(WorldRenderContext, WavePool, Camera)
  */
 public class WaveRenderer {
     public TidalWaveHandler handler;
@@ -44,18 +39,16 @@ public class WaveRenderer {
     }
 
     public void render(BufferBuilder buffer, WorldRenderContext context) {
-        List<Wave> waves = this.handler.getWaves();
+        WavePool waves = this.handler.getWaves();
         if (waves == null || waves.isEmpty()) return;
 
         float tickDelta = context.tickCounter().getTickDelta(false);
         Camera camera = context.camera();
 
-        for (Wave wave : waves) {
-            renderWave(buffer, camera, wave, tickDelta);
+        for (int i = 0; i < waves.size; i++) {
+            renderWave(buffer, camera, waves, i, tickDelta);
         }
 
-        renderOverlays(buffer, camera, handler.coveredBlocks);
-
         if (MinecraftClient.getInstance().getEntityRenderDispatcher().shouldRenderHitboxes()) {
             renderDebugHitboxes(context, waves, camera);
         }
@@ -64,60 +57,66 @@ public class WaveRenderer {
     /**
      * I made this its own method just so I can link it in the Javadoc
      */
-    private static void renderDebugHitboxes(WorldRenderContext context, List<Wave> waves, Camera camera) {
-        for (Wave wave : waves) {
+    private static void renderDebugHitboxes(WorldRenderContext context, WavePool waves, Camera camera) {
+        for (int i = 0; i < waves.size; i++) {
             MatrixStack matrixStack = new MatrixStack();
             VertexConsumer lines = context.consumers().getBuffer(RenderLayer.getLines());
             Vec3d cameraPos = camera.getPos();
             matrixStack.translate(-cameraPos.getX(), -cameraPos.getY(), -cameraPos.getZ());
-            WorldRenderer.drawBox(matrixStack, lines, wave.getHitBox(), 1f, 1f, 1f, 1f);
+            WorldRenderer.drawBox(matrixStack, lines, waves.getHitBox(i), 1f, 1f, 1f, 1f);
         }
     }
 
-    public void renderWave(BufferBuilder buffer, Camera camera, Wave wave, float delta) {
-        if (wave == null) return;
-
+    /**
+     * @param waves The wave pool to render from
+     * @param wave The wave's slot in the pool
+     */
+    public void renderWave(BufferBuilder buffer, Camera camera, WavePool waves, int wave, float delta) {
         MatrixStack matrices = new MatrixStack();
         matrices.push();
 
-        Box box = wave.getBoundingBox();
-        Vec3d center = box.getBottomCenter();
+        // bottom center of the wave's bounding box
         Vec3d cameraPos = camera.getPos();
-        Vec3d transPos = center.subtract(cameraPos);
+        double transX = waves.x[wave] - cameraPos.x;
+        double transY = waves.y[wave] - 0.5 - cameraPos.y;
+        double transZ = waves.z[wave] - cameraPos.z;
+
+        float width = waves.width[wave];
+        float length = waves.length[wave];
 
         matrices.push();
-        matrices.translate(transPos.x, transPos.y, transPos.z); // offsets to the wave's position
-        matrices.multiply(RotationAxis.POSITIVE_Y.rotationDegrees(-wave.yaw + 90)); // rotate wave left/right
-        matrices.multiply(RotationAxis.POSITIVE_X.rotationDegrees(wave.pitch));
-        float scale = wave.scale;
+        matrices.translate(transX, transY, transZ); // offsets to the wave's position
+        matrices.multiply(RotationAxis.POSITIVE_Y.rotationDegrees(-waves.yaw[wave] + 90)); // rotate wave left/right
+        matrices.multiply(RotationAxis.POSITIVE_X.rotationDegrees(waves.pitch[wave]));
+        float scale = waves.scale[wave];
         matrices.scale(scale, 1, scale);
         // this is totally messed up but its pretty unnoticeable and my math isn't woroking right now
-        matrices.translate(-wave.width / 3, 0, 0); // translate back to center
+        matrices.translate(-width / 3, 0, 0); // translate back to center
 
         Matrix4f posMatrix = matrices.peek().getPositionMatrix();
 
-        boolean washingUp = wave.isWashingUp();
+        boolean washingUp = waves.isWashingUp(wave);
         Sprite colorableSprite = washingUp ? getTopWashingSprite() : getMovingSprite();
         Sprite whiteSprite = washingUp ? getTopWashingWhiteSprite() : getMovingWhiteSprite();
 
-        int light = wave.getLight();
+        int light = waves.getLight(wave);
 
-        float red = wave.red;
-        float green = wave.green;
-        float blue = wave.blue;
-        float alpha = wave.alpha;
+        float red = waves.red[wave];
+        float green = waves.green[wave];
+        float blue = waves.blue[wave];
+        float alpha = waves.alpha[wave];
 
-        int age = wave.getAge();
-        int maxAge = wave.getMaxAge();
+        int age = waves.getAge(wave);
+        int maxAge = waves.getMaxAge(wave);
 
         // normal wave texture
-        for (int i = 0; i < wave.width; i++) {
-            waveQuad(posMatrix, buffer, colorableSprite, age, maxAge, i, 0, 0, 1, wave.length, red, green, blue, alpha, light);
-            waveQuad(posMatrix, buffer, whiteSprite, age, maxAge, i, 0.05f, 0, 1, wave.length, 1f, 1f, 1f, alpha, light);
+        for (int i = 0; i < width; i++) {
+            waveQuad(posMatrix, buffer, colorableSprite, age, maxAge, i, 0, 0, 1, length, red, green, blue, alpha, light);
+            waveQuad(posMatrix, buffer, whiteSprite, age, maxAge, i, 0.05f, 0, 1, length, 1f, 1f, 1f, alpha, light);
         }
 
         // beneath wave texture after hitting shore
-        if (washingUp && wave.bigWave) {
+        if (washingUp && waves.isBigWave(wave)) {
             Sprite washingColorableSprite = getBottomWashingSprite();
             Sprite washingWhiteSprite = getBottomWashingWhiteSprite();
 
@@ -127,7 +126,7 @@ public class WaveRenderer {
             float washingLength = ageDelta > turnBackDelta ? MathHelper.lerp((ageDelta - turnBackDelta) * 2, 2f, 3f) : 2f;
             float washingZ = ageDelta > turnBackDelta ? MathHelper.lerp((ageDelta - turnBackDelta) * 2, 1.35f, 0) : 1.35f;
             matrices.scale(1.25f, 1, 1);
-            for (int i = 0; i < wave.width; i++) {
+            for (int i = 0; i < width; i++) {
                 waveQuad(posMatrix, buffer, washingColorableSprite, age, maxAge, i - 0.15f, -0.05f, washingZ, 1, washingLength, red, green, blue, alpha, light);
                 waveQuad(posMatrix, buffer, washingWhiteSprite, age, maxAge, i - 0.15f, -0.01f, washingZ, 1, washingLength, 1f, 1f, 1f, alpha, light);
             }
@@ -164,42 +163,11 @@ public class WaveRenderer {
                 .color(red, green, blue, alpha).texture(u1, v1).light(light);
     }
 
-    public void renderOverlays(BufferBuilder buffer, Camera camera, Set<BlockPos> coveredBlocks) {
-        for (BlockPos covered : coveredBlocks) {
-            renderCoverOverlay(buffer, camera, covered);
-        }
-    }
-
-    public void renderCoverOverlay(BufferBuilder buffer, Camera camera, BlockPos pos) {
-        MatrixStack matrices = new MatrixStack();
-        Vec3d cameraPos = camera.getPos();
-        Vec3d transPos = pos.toBottomCenterPos().subtract(cameraPos);
-
-        Sprite sprite = getWetOverlaySprite();
-        float u0 = sprite.getMinU();
-        float u1 = sprite.getMaxU();
-        float v0 = sprite.getMinV();
-        float v1 = sprite.getMaxV();
-
-        int light = LightmapTextureManager.pack(0, 0);
-
-        matrices.push();
-        matrices.translate(transPos.x - 0.5, transPos.y + 1.01, transPos.z - 0.5); // offsets to the wave's position
-        Matrix4f matrix4f = matrices.peek().getPositionMatrix();
-
-        buffer.vertex(matrix4f, 0, 0, 0)
-                .color(0.1f, 0.1f, 0.25f, 0.25f).texture(u0, v0).light(light);
-
-        buffer.vertex(matrix4f, 0, 0, 1)
-                .color(0.1f, 0.1f, 0.25f, 0.25f).texture(u0, v1).light(light);
-
-        buffer.vertex(matrix4f, 1, 0, 1)
-                .color(0.1f, 0.1f, 0.25f, 0.25f).texture(u1, v1).light(light);
-
-        buffer.vertex(matrix4f, 1, 0, 0)
-                .color(0.1f, 0.1f, 0.25f, 0.25f).texture(u1, v0).light(light);
-
-        matrices.pop();
+    /**
+     * Draws the cached wet overlay mesh of all wet blocks(see {@link WetOverlayMesh}) - must be called after the wave shader & atlas are set up.
+     */
+    public void renderWetOverlay(WorldRenderContext context) {
+        TidalClient.WET_OVERLAY_MESH.render(this.handler.wetness, getWetOverlaySprite(), context.camera());
     }
 
     public Sprite getMovingSprite() {
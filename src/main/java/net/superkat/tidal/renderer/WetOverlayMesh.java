@@ -0,0 +1,108 @@
+package net.superkat.tidal.renderer;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.BuiltBuffer;
+import net.minecraft.client.render.Camera;
+import net.minecraft.client.render.LightmapTextureManager;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.client.util.BufferAllocator;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import net.superkat.tidal.wave.WetnessMap;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix4f;
+
+/**
+ * The wet overlay quads of all blocks in a {@link WetnessMap}, uploaded to the GPU once, and redrawn every frame without rebuilding - it's only rebuilt when the wetness map changes, or the overlay sprite is reloaded.
+ * <br><br>
+ * Vertices are stored relative to the camera's block when the mesh was built, so they stay small enough for floats.
+ * Only one world renders at a time, so a single mesh is shared(see {@link net.superkat.tidal.TidalClient#WET_OVERLAY_MESH}).
+ */
+public class WetOverlayMesh {
+    private static final int LIGHT = LightmapTextureManager.pack(0, 0);
+
+    @Nullable
+    private VertexBuffer vertexBuffer = null;
+    private boolean empty = true;
+    private BlockPos origin = BlockPos.ORIGIN;
+
+    // what the mesh was last built from - rebuilt if either is different
+    @Nullable
+    private WetnessMap builtMap = null;
+    @Nullable
+    private Sprite builtSprite = null;
+
+    /**
+     * Rebuilds the mesh if needed, then draws it. Expects the wave shader & atlas to already be set up.
+     */
+    public void render(WetnessMap wetness, Sprite sprite, Camera camera) {
+        boolean changed = wetness.pollChanged();
+        if (changed || wetness != this.builtMap || sprite != this.builtSprite) {
+            rebuild(wetness, sprite, camera.getBlockPos());
+        }
+        if (this.empty || this.vertexBuffer == null) return;
+
+        Vec3d cameraPos = camera.getPos();
+        Matrix4f modelView = new Matrix4f(RenderSystem.getModelViewMatrix()).translate(
+                (float) (this.origin.getX() - cameraPos.x),
+                (float) (this.origin.getY() - cameraPos.y),
+                (float) (this.origin.getZ() - cameraPos.z));
+
+        this.vertexBuffer.bind();
+        this.vertexBuffer.draw(modelView, RenderSystem.getProjectionMatrix(), RenderSystem.getShader());
+        VertexBuffer.unbind();
+    }
+
+    private void rebuild(WetnessMap wetness, Sprite sprite, BlockPos origin) {
+        this.builtMap = wetness;
+        this.builtSprite = sprite;
+        this.origin = origin;
+        this.empty = true;
+        if (wetness.isEmpty()) return;
+
+        float u0 = sprite.getMinU();
+        float u1 = sprite.getMaxU();
+        float v0 = sprite.getMinV();
+        float v1 = sprite.getMaxV();
+
+        try (BufferAllocator allocator = new BufferAllocator(VertexFormats.POSITION_COLOR_TEXTURE_LIGHT.getVertexSizeByte() * 4 * 64)) {
+            BufferBuilder buffer = new BufferBuilder(allocator, VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_COLOR_TEXTURE_LIGHT);
+            for (Long2IntMap.Entry entry : wetness.entries()) {
+                float alpha = 0.25f * WetnessMap.getLevel(entry.getIntValue()) / WetnessMap.LEVELS;
+                if (alpha <= 0f) continue;
+
+                long pos = entry.getLongKey();
+                float x = BlockPos.unpackLongX(pos) - origin.getX();
+                float y = BlockPos.unpackLongY(pos) - origin.getY() + 1.01f;
+                float z = BlockPos.unpackLongZ(pos) - origin.getZ();
+
+                buffer.vertex(x, y, z).color(0.1f, 0.1f, 0.25f, alpha).texture(u0, v0).light(LIGHT);
+                buffer.vertex(x, y, z + 1).color(0.1f, 0.1f, 0.25f, alpha).texture(u0, v1).light(LIGHT);
+                buffer.vertex(x + 1, y, z + 1).color(0.1f, 0.1f, 0.25f, alpha).texture(u1, v1).light(LIGHT);
+                buffer.vertex(x + 1, y, z).color(0.1f, 0.1f, 0.25f, alpha).texture(u1, v0).light(LIGHT);
+            }
+
+            BuiltBuffer builtBuffer = buffer.endNullable();
+            if (builtBuffer == null) return;
+
+            if (this.vertexBuffer == null) this.vertexBuffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
+            this.vertexBuffer.bind();
+            this.vertexBuffer.upload(builtBuffer); // closes the built buffer
+            VertexBuffer.unbind();
+            this.empty = false;
+        }
+    }
+
+    public void close() {
+        if (this.vertexBuffer != null) this.vertexBuffer.close();
+        this.vertexBuffer = null;
+        this.empty = true;
+        this.builtMap = null;
+        this.builtSprite = null;
+    }
+}
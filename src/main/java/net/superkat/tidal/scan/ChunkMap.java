@@ -0,0 +1,137 @@
+package net.superkat.tidal.scan;
+
+import com.google.common.collect.Iterables;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.ChunkPos;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Map of ChunkPos'(as longs) to values, split into regions of 8x8 chunks, which can be snapshotted without copying every chunk.
+ * <br><br>
+ * A snapshot(see {@link ChunkMap#snapshot()}) only copies the map of regions - the regions themselves are shared with it, and the first change to a shared region afterward copies just that region.
+ * So a {@link ShoreIndexBuilder} build which only changed a few chunks only copies the few regions those chunks are in, no matter how many chunks are loaded.
+ * <br><br>
+ * Snapshots can't be changed, so they can be read from any thread.
+ *
+ * @param <V> The value stored for each chunk - values should never be changed once put in, only replaced, as they're shared with snapshots
+ */
+public class ChunkMap<V> {
+    private static final int REGION_SHIFT = 3;
+
+    private final Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<V>> regions;
+    // regions which aren't shared with any snapshot, and can be changed in place
+    private final LongOpenHashSet ownedRegions = new LongOpenHashSet();
+    private final boolean frozen;
+    private int size;
+
+    // the last snapshot, until something changes
+    @Nullable
+    private ChunkMap<V> snapshot;
+
+    public ChunkMap() {
+        this(new Long2ObjectOpenHashMap<>(), 0, false);
+    }
+
+    private ChunkMap(Long2ObjectOpenHashMap<Long2ObjectOpenHashMap<V>> regions, int size, boolean frozen) {
+        this.regions = regions;
+        this.size = size;
+        this.frozen = frozen;
+    }
+
+    private static long regionOf(long chunkPosL) {
+        return ChunkPos.toLong(ChunkPos.getPackedX(chunkPosL) >> REGION_SHIFT, ChunkPos.getPackedZ(chunkPosL) >> REGION_SHIFT);
+    }
+
+    @Nullable
+    public V get(long chunkPosL) {
+        Long2ObjectOpenHashMap<V> region = this.regions.get(regionOf(chunkPosL));
+        return region == null ? null : region.get(chunkPosL);
+    }
+
+    public V getOrDefault(long chunkPosL, V defaultValue) {
+        V value = get(chunkPosL);
+        return value == null ? defaultValue : value;
+    }
+
+    public boolean containsKey(long chunkPosL) {
+        Long2ObjectOpenHashMap<V> region = this.regions.get(regionOf(chunkPosL));
+        return region != null && region.containsKey(chunkPosL);
+    }
+
+    /**
+     * @return The previous value, or null
+     */
+    @Nullable
+    public V put(long chunkPosL, V value) {
+        V old = getOwnedRegion(regionOf(chunkPosL)).put(chunkPosL, value);
+        if (old == null) this.size++;
+        return old;
+    }
+
+    /**
+     * @return The removed value, or null
+     */
+    @Nullable
+    public V remove(long chunkPosL) {
+        if (!containsKey(chunkPosL)) return null;
+        long regionPos = regionOf(chunkPosL);
+        Long2ObjectOpenHashMap<V> region = getOwnedRegion(regionPos);
+        V old = region.remove(chunkPosL);
+        this.size--;
+        if (region.isEmpty()) {
+            this.regions.remove(regionPos);
+            this.ownedRegions.remove(regionPos);
+        }
+        return old;
+    }
+
+    private Long2ObjectOpenHashMap<V> getOwnedRegion(long regionPos) {
+        if (this.frozen) throw new UnsupportedOperationException("ChunkMap snapshots can't be changed");
+        this.snapshot = null;
+        Long2ObjectOpenHashMap<V> region = this.regions.get(regionPos);
+        if (region != null && this.ownedRegions.contains(regionPos)) return region;
+
+        // copy the shared region before changing it
+        region = region == null ? new Long2ObjectOpenHashMap<>() : new Long2ObjectOpenHashMap<>(region);
+        this.regions.put(regionPos, region);
+        this.ownedRegions.add(regionPos);
+        return region;
+    }
+
+    public void clear() {
+        if (this.frozen) throw new UnsupportedOperationException("ChunkMap snapshots can't be changed");
+        this.regions.clear();
+        this.ownedRegions.clear();
+        this.size = 0;
+        this.snapshot = null;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return All values, region by region. Don't change this map while iterating.
+     */
+    public Iterable<V> values() {
+        return Iterables.concat(Iterables.transform(this.regions.values(), Long2ObjectOpenHashMap::values));
+    }
+
+    /**
+     * @return An unchangeable copy of this map, which isn't affected by later changes to this one. Snapshots of a snapshot, or of an unchanged map, are the same snapshot.
+     */
+    public ChunkMap<V> snapshot() {
+        if (this.frozen) return this;
+        if (this.snapshot == null) {
+            // every region is shared from now on
+            this.ownedRegions.clear();
+            this.snapshot = new ChunkMap<>(new Long2ObjectOpenHashMap<>(this.regions), this.size, true);
+        }
+        return this.snapshot;
+    }
+}
@@ -1,139 +1,181 @@
 package net.superkat.tidal.scan;
 
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
-import net.minecraft.client.world.ClientWorld;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
-import net.minecraft.util.math.Direction;
-import net.minecraft.world.Heightmap;
-import net.superkat.tidal.wave.TidalWaveHandler;
-import org.apache.commons.compress.utils.Lists;
 
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * Scans a chunk for water blocks and shoreline blocks.
+ * <br><br>
+ * The scanner never touches the ClientWorld - it only reads from a {@link ChunkSnapshot} taken on the main thread, which has already sorted every column's top block into the water or land {@link ColumnMask}.
+ * Shorelines are then found with bitwise operations on those masks(land columns next to water columns), and finally a {@link SitePos} is created every 8 shoreline blocks next to water.
  * @see WaterHandler
+ * @see ScannedChunk
  */
 public class ChunkScanner {
     public final WaterHandler handler;
-    public final ClientWorld world;
-
-    // blocks which have been checked to be water or not water
-    public Map<BlockPos, Boolean> cachedBlocks = new Object2ObjectOpenHashMap<>();
-
-    // blocks which have had their neighbours checked(scanned) as water or not water, and added to water body/shoreline
-    public Set<BlockPos> visitedBlocks = new ObjectOpenHashSet<>();
-
-    // cached iterator idk
-    public Iterator<BlockPos> cachedIterator = null;
+    public final ChunkSnapshot snapshot;
 
     // amount of shoreline blocks since the last created SitePos
     public int shorelinesSinceSite = 0;
 
     public ChunkPos chunkPos;
 
-    public ObjectOpenHashSet<BlockPos> waters = new ObjectOpenHashSet<>();
-    public ObjectOpenHashSet<BlockPos> shorelines = new ObjectOpenHashSet<>();
-    public ObjectOpenHashSet<SitePos> sites = new ObjectOpenHashSet<>();
+    public final long[] waterMask = ColumnMask.create();
+    public final long[] landMask = ColumnMask.create();
+    public final long[] solidMask = ColumnMask.create();
+    public final long[] shoreMask = ColumnMask.create();
+    public final short[] heights = new short[256];
+    public final List<SitePos> sites = new ObjectArrayList<>();
 
     // TODO(unimportant for now) - scan above and below for water to jumps in the water
-    public ChunkScanner(WaterHandler handler, ClientWorld world, ChunkPos chunkPos) {
+    public ChunkScanner(WaterHandler handler, ChunkSnapshot snapshot) {
         this.handler = handler;
-        this.world = world;
-        this.chunkPos = chunkPos;
-        BlockPos startPos = chunkPos.getStartPos();
-        BlockPos endPos = startPos.add(15, 0, 15);
-        this.cachedIterator = stack(startPos, endPos);
+        this.snapshot = snapshot;
+        this.chunkPos = snapshot.chunkPos;
     }
 
     public ScannedChunk scan() {
-        BlockPos startPos = chunkPos.getStartPos();
-        BlockPos endPos = startPos.add(15, 0, 15);
-        for (BlockPos pos : BlockPos.iterate(startPos, endPos)) {
-            int y = sampleHeightmap(pos) - 1;
-            scanPos(pos.withY(y));
+        // dry chunk - no shorelines or sites, but its land is still kept for seams & wave collisions(see TerrainField)
+        if (!this.snapshot.hasWater()) {
+            copySnapshot();
+            return new ScannedChunk(this.chunkPos, this.waterMask, this.landMask, this.solidMask, this.shoreMask, this.heights, new SitePos[0], this.snapshot.stride);
         }
 
-        return new ScannedChunk(this.chunkPos, this.waters, this.shorelines, this.sites);
-    }
+        // chunk hasn't changed since it was last scanned & cached
+        ShoreCache cache = this.handler.shoreCache;
+        if (cache != null) {
+            ScannedChunk cached = cache.load(this.chunkPos, this.snapshot.hash);
+            if (cached != null) return cached;
+        }
 
-    private int sampleHeightmap(BlockPos pos) {
-        return this.world.getTopY(Heightmap.Type.WORLD_SURFACE, pos.getX(), pos.getZ());
-    }
+        copySnapshot();
+        findShorelines();
+        placeSites();
+        ScannedChunk scannedChunk = new ScannedChunk(this.chunkPos, this.waterMask, this.landMask, this.solidMask, this.shoreMask, this.heights, this.sites.toArray(new SitePos[0]), this.snapshot.stride);
 
-    /**
-     * @return An iterator which represents the next blocks in line to be scanned
-     */
-    public Iterator<BlockPos> stack(BlockPos startPos, BlockPos endPos) {
-        cachedIterator = BlockPos.iterate(startPos, endPos).iterator();
-        return cachedIterator;
+        if (cache != null) cache.save(scannedChunk, this.snapshot.hash);
+        return scannedChunk;
     }
 
     /**
-     * Scan a block to be water or not water.
-     * <br><br>If not already visited, the immediately surrounding neighbors are also checked for water and cached in a "+" shape. The corners for a square are NOT scanned.
+     * Re-samples a few columns of an already scanned chunk from a newer snapshot(e.g. after a block update), instead of scanning the whole chunk again.
+     * <br><br>
+     * The shorelines are recalculated from the patched masks, and only sites near the patched columns are removed/added - all other sites are kept as is.
      *
-     * @param pos Block pos to scan
+     * @param old The chunk's current scan - not modified
+     * @param columns The column indexes to re-sample(see {@link ColumnMask#index(int, int)})
+     * @return A patched copy of the scanned chunk
      */
-    public void scanPos(BlockPos pos) {
-        // if already visited or is air -> return
-        if(visitedBlocks.contains(pos)) return;
-        if(world.isAir(pos)) return;
-
-        // mark visited
-        boolean posIsWater = cacheAndIsWater(pos);
-        visitedBlocks.add(pos);
-
-        // shorelines need to be checked for still
-        List<BlockPos> nonWaterBlocks = Lists.newArrayList();
-        List<BlockPos> waterBlocks = Lists.newArrayList();
-        if (posIsWater) waterBlocks.add(pos); else nonWaterBlocks.add(pos); // they keep getting more cursed
-
-        // check and cache neighbours
-        for (Direction direction : Direction.Type.HORIZONTAL) {
-            BlockPos checkPos = pos.offset(direction);
-            if(world.isAir(checkPos)) continue;
-            if(direction == Direction.NORTH && pos.getZ() % 16 == 0) continue;
-            if(direction == Direction.WEST && pos.getX() % 16 == 0) continue;
-            if(direction == Direction.SOUTH && (pos.getZ() - 1) % 16 == 0) continue;
-            if(direction == Direction.EAST && (pos.getX() + 1) % 16 == 0) continue;
-
-            boolean neighborIsWater = cacheAndIsWater(checkPos);
-            // that is super cursed but okay - no that's actually incredibly cursed(wow I spelt that right first try)
-            // if init scan pos is water OR if the check pos is the top of water
-            if(neighborIsWater) waterBlocks.add(checkPos);
-            else nonWaterBlocks.add(checkPos);
+    public ScannedChunk patch(ScannedChunk old, IntCollection columns) {
+        System.arraycopy(old.waterMask, 0, this.waterMask, 0, ColumnMask.LONGS);
+        System.arraycopy(old.landMask, 0, this.landMask, 0, ColumnMask.LONGS);
+        System.arraycopy(old.solidMask, 0, this.solidMask, 0, ColumnMask.LONGS);
+        System.arraycopy(old.heights, 0, this.heights, 0, this.heights.length);
+
+        // only the patched columns are taken from the new snapshot
+        for (IntIterator iterator = columns.iterator(); iterator.hasNext(); ) {
+            int index = iterator.nextInt();
+            ColumnMask.set(this.waterMask, index, ColumnMask.get(this.snapshot.waterMask, index));
+            ColumnMask.set(this.landMask, index, ColumnMask.get(this.snapshot.landMask, index));
+            ColumnMask.set(this.solidMask, index, ColumnMask.get(this.snapshot.solidMask, index));
+            this.heights[index] = this.snapshot.heights[index];
         }
 
-        // no water blocks should be queued from scanned non-water blocks
-        if(waterBlocks.isEmpty() || !posIsWater) return;
+        findShorelines();
+        patchSites(old, columns);
 
-        // shoreline creation - neighbouring water blocks scan shoreline blocks and add them
-        if(!nonWaterBlocks.isEmpty()) {
-            this.shorelines.addAll(nonWaterBlocks);
+        ScannedChunk patched = new ScannedChunk(this.chunkPos, this.waterMask, this.landMask, this.solidMask, this.shoreMask, this.heights, this.sites.toArray(new SitePos[0]), old.stride);
+        patched.generation = old.generation;
+        return patched;
+    }
+
+    /**
+     * Copies the snapshot's columns, as the snapshot goes back to its pool after the scan.
+     */
+    private void copySnapshot() {
+        System.arraycopy(this.snapshot.waterMask, 0, this.waterMask, 0, ColumnMask.LONGS);
+        System.arraycopy(this.snapshot.landMask, 0, this.landMask, 0, ColumnMask.LONGS);
+        System.arraycopy(this.snapshot.solidMask, 0, this.solidMask, 0, ColumnMask.LONGS);
+        System.arraycopy(this.snapshot.heights, 0, this.heights, 0, this.heights.length);
+    }
+
+    /**
+     * Shoreline columns are land columns with at least one water neighbour - neighbours in other chunks are skipped here, and get stitched in later by {@link ChunkSeam}.
+     */
+    private void findShorelines() {
+        ColumnMask.neighbours(this.waterMask, this.shoreMask);
+        ColumnMask.and(this.shoreMask, this.landMask, this.shoreMask);
+    }
 
-            this.shorelinesSinceSite += nonWaterBlocks.size();
-            if(this.shorelinesSinceSite >= 8) {
-                this.sites.add(new SitePos(pos));
+    /**
+     * Goes through all water columns in order, counting their shoreline neighbours, and creates a SitePos every 8 shoreline blocks.
+     * <br><br>
+     * At a lower level of detail, only the sampled columns are counted, so there's about 1 site per stride sites at full detail.
+     */
+    private void placeSites() {
+        int strideMask = this.snapshot.stride - 1;
+        for (int i = ColumnMask.nextSetBit(this.waterMask, 0); i >= 0; i = ColumnMask.nextSetBit(this.waterMask, i + 1)) {
+            if (((ColumnMask.getX(i) | ColumnMask.getZ(i)) & strideMask) != 0) continue;
+            int shorelines = ColumnMask.countNeighbours(this.shoreMask, i);
+            if (shorelines == 0) continue;
+
+            this.shorelinesSinceSite += shorelines;
+            if (this.shorelinesSinceSite >= 8) {
+                this.sites.add(new SitePos(new BlockPos(chunkPos.getStartX() + ColumnMask.getX(i), this.heights[i], chunkPos.getStartZ() + ColumnMask.getZ(i))));
                 this.shorelinesSinceSite = 0;
             }
         }
-
-        this.waters.addAll(waterBlocks);
     }
 
     /**
-     * Cache a block and return if it is water, all in the same method!
-     *
-     * @param pos BlockPos to cache and check if its water
-     * @return Returns if the BlockPos is water or not - NOT if the block was cached successfully(!!!), as you'd normally expect from a method like this
+     * Keeps all of the old scan's sites, except ones near the patched columns which are no longer next to a shoreline.
+     * If no site is left near the patched columns, but there are now enough shoreline blocks there(8), a new site is created at the water column with the most shoreline neighbours.
      */
-    public boolean cacheAndIsWater(BlockPos pos) {
-        return cachedBlocks.computeIfAbsent(pos, pos1 -> TidalWaveHandler.posIsWater(world, pos1));
+    private void patchSites(ScannedChunk old, IntCollection columns) {
+        // columns within 3 blocks of a patched column
+        long[] window = ColumnMask.create();
+        for (IntIterator iterator = columns.iterator(); iterator.hasNext(); ) {
+            int index = iterator.nextInt();
+            int x = ColumnMask.getX(index);
+            int z = ColumnMask.getZ(index);
+            for (int dz = Math.max(0, z - 3); dz <= Math.min(15, z + 3); dz++) {
+                for (int dx = Math.max(0, x - 3); dx <= Math.min(15, x + 3); dx++) {
+                    ColumnMask.set(window, ColumnMask.index(dx, dz));
+                }
+            }
+        }
+
+        boolean windowHasSite = false;
+        for (SitePos site : old.sites) {
+            int index = ColumnMask.index(site.getX() & 15, site.getZ() & 15);
+            if (ColumnMask.get(window, index)) {
+                if (!ColumnMask.get(this.waterMask, index) || ColumnMask.countNeighbours(this.shoreMask, index) == 0) continue; // no longer by the shore
+                windowHasSite = true;
+            }
+            this.sites.add(site);
+        }
+        if (windowHasSite) return;
+
+        int shorelines = 0;
+        int bestIndex = -1;
+        int bestCount = 0;
+        for (int i = ColumnMask.nextSetBit(window, 0); i >= 0; i = ColumnMask.nextSetBit(window, i + 1)) {
+            if (!ColumnMask.get(this.waterMask, i)) continue;
+            int count = ColumnMask.countNeighbours(this.shoreMask, i);
+            shorelines += count;
+            if (count > bestCount) {
+                bestCount = count;
+                bestIndex = i;
+            }
+        }
+
+        if (shorelines >= 8) {
+            this.sites.add(new SitePos(new BlockPos(chunkPos.getStartX() + ColumnMask.getX(bestIndex), this.heights[bestIndex], chunkPos.getStartZ() + ColumnMask.getZ(bestIndex))));
+        }
     }
 }
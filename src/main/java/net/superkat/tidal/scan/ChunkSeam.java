@@ -0,0 +1,102 @@
+package net.superkat.tidal.scan;
+
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * The border between two neighbouring scanned chunks.
+ * <br><br>
+ * The {@link ChunkScanner} only looks within its own chunk, so shorelines running along chunk edges are missed. Once both chunks are scanned,
+ * their edge strips(see {@link ScannedChunk#waterEdges}) are compared to find the missing shoreline blocks and sites, without rescanning either chunk.
+ * This only looks at the 16 column pairs along the border.
+ *
+ * @see ShoreIndexBuilder#stitchSeams(long)
+ */
+public class ChunkSeam {
+    // the west(x axis) or north(z axis) chunk
+    public final ScannedChunk first;
+    // the east(x axis) or south(z axis) chunk
+    public final ScannedChunk second;
+    public final Direction.Axis axis;
+
+    // bits of the first/second chunk's edge columns which are shoreline blocks, because of water on the other side of the border
+    public final int firstShore;
+    public final int secondShore;
+
+    // sites created along the border, in the chunk with their water column
+    public final SitePos[] firstSites;
+    public final SitePos[] secondSites;
+
+    private ChunkSeam(ScannedChunk first, ScannedChunk second, Direction.Axis axis, int firstShore, int secondShore, SitePos[] firstSites, SitePos[] secondSites) {
+        this.first = first;
+        this.second = second;
+        this.axis = axis;
+        this.firstShore = firstShore;
+        this.secondShore = secondShore;
+        this.firstSites = firstSites;
+        this.secondSites = secondSites;
+    }
+
+    /**
+     * @param first The west(x axis) or north(z axis) chunk
+     * @param second The east(x axis) or south(z axis) chunk
+     * @param axis The axis the two chunks neighbour each other on
+     * @param old The previous seam between these chunks, whose sites are reused if they're still at the same position
+     */
+    public static ChunkSeam stitch(ScannedChunk first, ScannedChunk second, Direction.Axis axis, @Nullable ChunkSeam old) {
+        Direction firstEdge = axis == Direction.Axis.X ? Direction.EAST : Direction.SOUTH;
+        Direction secondEdge = firstEdge.getOpposite();
+
+        int firstWater = first.getWaterEdge(firstEdge);
+        int secondWater = second.getWaterEdge(secondEdge);
+        int firstShore = first.getLandEdge(firstEdge) & secondWater;
+        int secondShore = second.getLandEdge(secondEdge) & firstWater;
+
+        // water columns count the shoreline across the border, same as the ChunkScanner counts shorelines within a chunk
+        SitePos[] firstSites = placeSites(first, firstEdge, firstWater & secondShore, old == null ? null : old.firstSites);
+        SitePos[] secondSites = placeSites(second, secondEdge, secondWater & firstShore, old == null ? null : old.secondSites);
+
+        return new ChunkSeam(first, second, axis, firstShore, secondShore, firstSites, secondSites);
+    }
+
+    private static SitePos[] placeSites(ScannedChunk chunk, Direction edge, int waterByShore, @Nullable SitePos[] oldSites) {
+        if (Integer.bitCount(waterByShore) < 8) return new SitePos[0];
+
+        List<SitePos> sites = new ObjectArrayList<>();
+        int shorelinesSinceSite = 0;
+        for (int i = 0; i < 16; i++) {
+            if ((waterByShore & (1 << i)) == 0) continue;
+            if (++shorelinesSinceSite < 8) continue;
+
+            long pos = chunk.getPos(ColumnMask.edgeIndex(edge, i));
+            sites.add(reuseSite(pos, oldSites));
+            shorelinesSinceSite = 0;
+        }
+        return sites.toArray(new SitePos[0]);
+    }
+
+    private static SitePos reuseSite(long pos, @Nullable SitePos[] oldSites) {
+        if (oldSites != null) {
+            for (SitePos site : oldSites) {
+                if (site.getPos().asLong() == pos) return site;
+            }
+        }
+        return new SitePos(BlockPos.fromLong(pos));
+    }
+
+    /**
+     * Adds all shoreline blocks(as longs via BlockPos#asLong) found along this seam to a collection
+     */
+    public void collectShorelines(LongCollection out) {
+        Direction firstEdge = this.axis == Direction.Axis.X ? Direction.EAST : Direction.SOUTH;
+        for (int i = 0; i < 16; i++) {
+            if ((this.firstShore & (1 << i)) != 0) out.add(this.first.getPos(ColumnMask.edgeIndex(firstEdge, i)));
+            if ((this.secondShore & (1 << i)) != 0) out.add(this.second.getPos(ColumnMask.edgeIndex(firstEdge.getOpposite(), i)));
+        }
+    }
+}
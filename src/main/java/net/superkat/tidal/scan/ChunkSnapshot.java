@@ -0,0 +1,228 @@
+package net.superkat.tidal.scan;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+import net.superkat.tidal.wave.TidalWaveHandler;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A copy of everything the {@link ChunkScanner} needs from a chunk - each column's surface height, and if that surface is water or land - taken on the main thread.
+ * <br><br>
+ * Scanners run off-thread while the main/network threads can change or unload the chunk, so they only ever read from a snapshot instead of the ClientWorld.
+ * A snapshot is never changed after being captured, and is handed back to a small pool once its scan is done.
+ * <br><br>
+ * Before sampling, each of the chunk's sections has its block palette checked for water-bearing states. Columns whose surface is in a section without any are land, without reading the block.
+ * <br><br>
+ * The surface heights come straight from the chunk's WORLD_SURFACE heightmap, which is unpacked all at once(see {@link ChunkSnapshot#unpackHeightmap(WorldChunk)}) instead of being sampled column by column.
+ */
+public class ChunkSnapshot {
+    private static final int MAX_POOLED = 64;
+    private static final ConcurrentLinkedQueue<ChunkSnapshot> POOL = new ConcurrentLinkedQueue<>();
+
+    public ChunkPos chunkPos;
+    // 1 for full detail, or 2/4 to only sample every 2nd/4th column(see ScannedChunk#stride)
+    public int stride;
+    // if any of the chunk's sections could contain water, going off of their palettes
+    public boolean wet;
+    public final long[] waterMask = ColumnMask.create();
+    public final long[] landMask = ColumnMask.create();
+    // land columns with a solid top block - columns in dry sections are assumed to be solid, as they're never read
+    public final long[] solidMask = ColumnMask.create();
+    public final short[] heights = new short[256];
+    // y of each column's top block, unpacked from the heightmap - reused between captures
+    private final int[] surfaceYs = new int[256];
+    // hash of each sampled column's height & water/solid bits - see ShoreCache & WaterHandler#rescanChunk
+    public long hash;
+
+    private ChunkSnapshot() {
+    }
+
+    /**
+     * Copies a chunk's surface columns into a(pooled) snapshot. Must be called on the main thread!
+     */
+    public static ChunkSnapshot capture(ClientWorld world, ChunkPos chunkPos) {
+        return capture(world, chunkPos, 1);
+    }
+
+    /**
+     * Copies a chunk's surface columns into a(pooled) snapshot, only sampling every stride-th column. Each sampled column is copied to the rest of its stride x stride block. Must be called on the main thread!
+     *
+     * @param stride 1, 2, or 4
+     */
+    public static ChunkSnapshot capture(ClientWorld world, ChunkPos chunkPos, int stride) {
+        ChunkSnapshot snapshot = POOL.poll();
+        if (snapshot == null) snapshot = new ChunkSnapshot();
+        snapshot.chunkPos = chunkPos;
+        snapshot.stride = stride;
+        Arrays.fill(snapshot.waterMask, 0);
+        Arrays.fill(snapshot.landMask, 0);
+        Arrays.fill(snapshot.solidMask, 0);
+
+        WorldChunk chunk = world.getChunk(chunkPos.x, chunkPos.z);
+        ChunkSection[] sections = chunk.getSectionArray();
+        boolean[] wetSections = checkSections(sections);
+        snapshot.wet = false;
+        for (boolean wetSection : wetSections) snapshot.wet |= wetSection;
+
+        snapshot.unpackHeightmap(chunk);
+        for (int z = 0; z < 16; z += stride) {
+            for (int x = 0; x < 16; x += stride) {
+                snapshot.sampleColumn(chunk, sections, wetSections, x, z);
+                if (stride > 1) snapshot.fillBlock(x, z);
+            }
+        }
+        snapshot.hashColumns();
+        return snapshot;
+    }
+
+    /**
+     * Hashes each sampled column's height & if it is water/solid land/non-solid land - only what the {@link ChunkScanner} reads, so changes which can't affect the scan(e.g. a door opening, or a crop growing) keep the same hash.
+     */
+    private void hashColumns() {
+        long hash = 0xcbf29ce484222325L ^ ShoreCache.VERSION ^ ((long) this.stride << 32); // FNV-1a, different per level of detail
+        for (int z = 0; z < 16; z += this.stride) {
+            for (int x = 0; x < 16; x += this.stride) {
+                int index = ColumnMask.index(x, z);
+                int type = ColumnMask.get(this.waterMask, index) ? 1 : ColumnMask.get(this.landMask, index) ? (ColumnMask.get(this.solidMask, index) ? 2 : 3) : 0;
+                hash = (hash ^ this.heights[index]) * 0x100000001b3L;
+                hash = (hash ^ type) * 0x100000001b3L;
+            }
+        }
+        this.hash = hash;
+    }
+
+    /**
+     * Copies a sampled column's height & water/land bits to the rest of its stride x stride block.
+     */
+    private void fillBlock(int x, int z) {
+        int sample = ColumnMask.index(x, z);
+        boolean water = ColumnMask.get(this.waterMask, sample);
+        boolean land = ColumnMask.get(this.landMask, sample);
+        boolean solid = ColumnMask.get(this.solidMask, sample);
+        for (int dz = 0; dz < this.stride; dz++) {
+            for (int dx = 0; dx < this.stride; dx++) {
+                int index = ColumnMask.index(x + dx, z + dz);
+                this.heights[index] = this.heights[sample];
+                ColumnMask.set(this.waterMask, index, water);
+                ColumnMask.set(this.landMask, index, land);
+                ColumnMask.set(this.solidMask, index, solid);
+            }
+        }
+    }
+
+    /**
+     * Hands this snapshot back to the pool - it shouldn't be used afterward.
+     */
+    public void release() {
+        if (POOL.size() < MAX_POOLED) POOL.offer(this);
+    }
+
+    /**
+     * Reads all 256 columns of the chunk's WORLD_SURFACE heightmap into {@link ChunkSnapshot#surfaceYs} in one pass over its packed longs,
+     * instead of going through the heightmap for each column.
+     */
+    private void unpackHeightmap(WorldChunk chunk) {
+        Heightmap heightmap = chunk.getHeightmap(Heightmap.Type.WORLD_SURFACE);
+        long[] packed = heightmap.asLongArray();
+        // same entry size as vanilla's heightmaps - entries never span two longs
+        int bits = MathHelper.ceilLog2(chunk.getHeight() + 1);
+        int perLong = 64 / bits;
+        long mask = (1L << bits) - 1;
+        // stored values are the y above the top block, relative to the bottom of the world
+        int offset = chunk.getBottomY() - 1;
+
+        if (packed.length * perLong < 256) {
+            // unexpected format - let the heightmap unpack itself
+            for (int i = 0; i < 256; i++) {
+                this.surfaceYs[i] = heightmap.get(ColumnMask.getX(i), ColumnMask.getZ(i)) - 1;
+            }
+            return;
+        }
+
+        int index = 0;
+        for (int i = 0; i < packed.length && index < 256; i++) {
+            long bitsLong = packed[i];
+            for (int j = 0; j < perLong && index < 256; j++) {
+                this.surfaceYs[index++] = (int) (bitsLong & mask) + offset;
+                bitsLong >>>= bits;
+            }
+        }
+    }
+
+    /**
+     * Checks each section's palette for water-bearing block states. Palettes can hold states which are no longer in the section, so this may have false positives, but never false negatives.
+     *
+     * @return Which of the chunk's sections could contain water
+     */
+    private static boolean[] checkSections(ChunkSection[] sections) {
+        boolean[] wetSections = new boolean[sections.length];
+        for (int i = 0; i < sections.length; i++) {
+            ChunkSection section = sections[i];
+            if (section == null || section.isEmpty()) continue;
+            wetSections[i] = section.getBlockStateContainer().hasAny(TidalWaveHandler::stateIsWater);
+        }
+        return wetSections;
+    }
+
+    /**
+     * Sorts one column's top block into water or land, and stores its height.
+     *
+     * @param x The column's x within the chunk(0-15)
+     * @param z The column's z within the chunk(0-15)
+     */
+    private void sampleColumn(WorldChunk chunk, ChunkSection[] sections, boolean[] wetSections, int x, int z) {
+        int index = ColumnMask.index(x, z);
+        int y = this.surfaceYs[index];
+        this.heights[index] = (short) y;
+        if (y < chunk.getBottomY()) return; // empty column
+
+        // the heightmap's top block is never air, so a column in a dry section is always land
+        int sectionIndex = chunk.getSectionIndex(y);
+        if (sectionIndex < 0 || sectionIndex >= wetSections.length || !wetSections[sectionIndex]) {
+            ColumnMask.set(this.landMask, index);
+            ColumnMask.set(this.solidMask, index);
+            return;
+        }
+
+        BlockState state = getState(chunk, sections, x, y, z);
+        if (TidalWaveHandler.stateIsWater(state)) {
+            ColumnMask.set(this.waterMask, index);
+            return;
+        }
+
+        boolean solid = state.isSolid();
+        if (!solid) {
+            BlockState below = getState(chunk, sections, x, y - 1, z);
+            if (TidalWaveHandler.stateIsWater(below)) {
+                // non-solid blocks floating on water(e.g. lily pads) don't count as shoreline
+                this.heights[index] = (short) (y - 1);
+                ColumnMask.set(this.waterMask, index);
+                return;
+            }
+        }
+
+        ColumnMask.set(this.landMask, index);
+        ColumnMask.set(this.solidMask, index, solid);
+    }
+
+    /**
+     * Reads a block state straight from the chunk's sections. Only works for positions within the chunk!
+     */
+    private static BlockState getState(WorldChunk chunk, ChunkSection[] sections, int x, int y, int z) {
+        int index = chunk.getSectionIndex(y);
+        if (index < 0 || index >= sections.length) return Blocks.VOID_AIR.getDefaultState();
+        return sections[index].getBlockState(x & 15, y & 15, z & 15);
+    }
+
+    public boolean hasWater() {
+        return this.wet && !ColumnMask.isEmpty(this.waterMask);
+    }
+}
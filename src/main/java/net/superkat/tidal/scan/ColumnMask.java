@@ -0,0 +1,156 @@
+package net.superkat.tidal.scan;
+
+import net.minecraft.util.math.Direction;
+
+/**
+ * Helpers for 256-bit column masks - one bit for each x/z column of a chunk, stored as 4 longs.
+ * <br><br>
+ * A column's bit index is (z << 4) | x, meaning each long holds 4 rows(z) of 16 columns(x).
+ * Moving one block east/west is shifting by 1 bit, and moving one block north/south is shifting by 16 bits.
+ *
+ * @see ScannedChunk
+ */
+public final class ColumnMask {
+    public static final int LONGS = 4;
+
+    // bits of the x = 0 and x = 15 columns in each of a long's 4 rows
+    private static final long WEST_EDGE = 0x0001000100010001L;
+    private static final long EAST_EDGE = 0x8000800080008000L;
+
+    private ColumnMask() {
+    }
+
+    public static long[] create() {
+        return new long[LONGS];
+    }
+
+    public static int index(int x, int z) {
+        return (z << 4) | x;
+    }
+
+    public static int getX(int index) {
+        return index & 15;
+    }
+
+    public static int getZ(int index) {
+        return index >> 4;
+    }
+
+    public static boolean get(long[] mask, int index) {
+        return (mask[index >> 6] & (1L << index)) != 0;
+    }
+
+    public static void set(long[] mask, int index) {
+        mask[index >> 6] |= 1L << index;
+    }
+
+    public static void set(long[] mask, int index, boolean value) {
+        if (value) set(mask, index);
+        else clear(mask, index);
+    }
+
+    public static void clear(long[] mask, int index) {
+        mask[index >> 6] &= ~(1L << index);
+    }
+
+    public static boolean isEmpty(long[] mask) {
+        return (mask[0] | mask[1] | mask[2] | mask[3]) == 0;
+    }
+
+    public static int count(long[] mask) {
+        return Long.bitCount(mask[0]) + Long.bitCount(mask[1]) + Long.bitCount(mask[2]) + Long.bitCount(mask[3]);
+    }
+
+    /**
+     * Used for iterating through all set bits:
+     * <pre>{@code for (int i = nextSetBit(mask, 0); i >= 0; i = nextSetBit(mask, i + 1))}</pre>
+     *
+     * @return The index of the next set bit at or after the given index, or -1 if there are none left.
+     */
+    public static int nextSetBit(long[] mask, int fromIndex) {
+        if (fromIndex >= 256) return -1;
+        int longIndex = fromIndex >> 6;
+        long bits = mask[longIndex] & (-1L << fromIndex);
+        while (true) {
+            if (bits != 0) return (longIndex << 6) + Long.numberOfTrailingZeros(bits);
+            if (++longIndex >= LONGS) return -1;
+            bits = mask[longIndex];
+        }
+    }
+
+    /**
+     * Sets every column in out which has at least one set neighbour(north, south, east or west) in the mask. Columns outside the chunk are never counted.
+     *
+     * @param mask The mask to check the neighbours of
+     * @param out Where the neighbour mask is put - can't be the same array as the mask
+     */
+    public static void neighbours(long[] mask, long[] out) {
+        for (int i = 0; i < LONGS; i++) {
+            long bits = mask[i];
+            long fromEast = (bits >>> 1) & ~EAST_EDGE;
+            long fromWest = (bits << 1) & ~WEST_EDGE;
+            long fromSouth = (bits >>> 16) | (i < LONGS - 1 ? mask[i + 1] << 48 : 0);
+            long fromNorth = (bits << 16) | (i > 0 ? mask[i - 1] >>> 48 : 0);
+            out[i] = fromEast | fromWest | fromSouth | fromNorth;
+        }
+    }
+
+    /**
+     * @return How many of a column's 4 direct neighbours are set in the mask
+     */
+    public static int countNeighbours(long[] mask, int index) {
+        int x = getX(index);
+        int z = getZ(index);
+        int count = 0;
+        if (x > 0 && get(mask, index - 1)) count++;
+        if (x < 15 && get(mask, index + 1)) count++;
+        if (z > 0 && get(mask, index - 16)) count++;
+        if (z < 15 && get(mask, index + 16)) count++;
+        return count;
+    }
+
+    /**
+     * @return A 16-bit strip of the columns along one of the chunk's edges - bit i is the i-th column along that edge(x for north/south edges, z for west/east edges)
+     */
+    public static int edge(long[] mask, Direction direction) {
+        return switch (direction) {
+            case NORTH -> (int) (mask[0] & 0xFFFF);
+            case SOUTH -> (int) (mask[LONGS - 1] >>> 48);
+            case WEST -> column(mask, 0);
+            case EAST -> column(mask, 15);
+            default -> 0;
+        };
+    }
+
+    /**
+     * @return The column index of the i-th column along one of the chunk's edges
+     */
+    public static int edgeIndex(Direction direction, int i) {
+        return switch (direction) {
+            case NORTH -> index(i, 0);
+            case SOUTH -> index(i, 15);
+            case WEST -> index(0, i);
+            default -> index(15, i);
+        };
+    }
+
+    private static int column(long[] mask, int x) {
+        int strip = 0;
+        for (int z = 0; z < 16; z++) {
+            if (get(mask, index(x, z))) strip |= 1 << z;
+        }
+        return strip;
+    }
+
+    public static void and(long[] mask, long[] other, long[] out) {
+        for (int i = 0; i < LONGS; i++) out[i] = mask[i] & other[i];
+    }
+
+    public static void andNot(long[] mask, long[] other, long[] out) {
+        for (int i = 0; i < LONGS; i++) out[i] = mask[i] & ~other[i];
+    }
+
+    public static void or(long[] mask, long[] other, long[] out) {
+        for (int i = 0; i < LONGS; i++) out[i] = mask[i] | other[i];
+    }
+}
@@ -0,0 +1,114 @@
+package net.superkat.tidal.scan;
+
+import net.superkat.tidal.Tidal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Tidal's own small thread pool for chunk scans, so they don't compete with vanilla's chunk meshing on the main worker executor.
+ * <br><br>
+ * The pool only has a couple of low priority daemon threads, and waiting tasks are run lowest priority value first - for chunk scans, that's the chunk's squared distance from the camera.
+ * Tasks can be cancelled before they run, in which case their future completes with null instead of running the task.
+ *
+ * @see WaterHandler#scheduleChunkScans()
+ */
+public final class ScanExecutor {
+    public static final int THREADS = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 4));
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            THREADS, THREADS,
+            30L, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(),
+            new ScanThreadFactory()
+    );
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private ScanExecutor() {
+    }
+
+    /**
+     * @param priority Lower values are run first
+     * @param supplier The task to run
+     * @return The submitted task, which can be cancelled until it starts running
+     */
+    public static <T> ScanTask<T> submit(double priority, Supplier<T> supplier) {
+        ScanTask<T> task = create(priority, supplier);
+        // execute, not submit - submit would wrap the task in a FutureTask, which the priority queue can't compare
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    /**
+     * Creates a task without submitting it - used to run scans on the main thread instead(see {@link net.superkat.tidal.config.TidalConfig.ScanMode}).
+     * The task should only be run directly on the main thread, as chunk scan tasks capture their chunk's snapshot when run. To move one to the scan threads,
+     * cancel it and submit a new task with a snapshot captured on the main thread instead(see {@link WaterHandler#runBudgetedScans()}).
+     */
+    public static <T> ScanTask<T> create(double priority, Supplier<T> supplier) {
+        return new ScanTask<>(priority, supplier);
+    }
+
+    public static class ScanTask<T> implements Runnable, Comparable<ScanTask<?>> {
+        public final double priority;
+        public final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long sequence = SEQUENCE.getAndIncrement();
+        private final Supplier<T> supplier;
+        private volatile boolean cancelled = false;
+
+        private ScanTask(double priority, Supplier<T> supplier) {
+            this.priority = priority;
+            this.supplier = supplier;
+        }
+
+        @Override
+        public void run() {
+            if (this.cancelled || this.future.isDone()) return;
+            try {
+                this.future.complete(this.supplier.get());
+            } catch (Throwable throwable) {
+                Tidal.LOGGER.error("Tidal scan task failed", throwable);
+                this.future.completeExceptionally(throwable);
+            }
+        }
+
+        /**
+         * Stops this task from running if it hasn't started yet, and completes its future with null right away so nothing waits on it.
+         */
+        public void cancel() {
+            this.cancelled = true;
+            this.future.complete(null);
+        }
+
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        @Override
+        public int compareTo(ScanTask<?> other) {
+            int compare = Double.compare(this.priority, other.priority);
+            return compare != 0 ? compare : Long.compare(this.sequence, other.sequence);
+        }
+    }
+
+    private static class ScanThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Tidal Scanner #" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+}
@@ -1,20 +1,159 @@
 package net.superkat.tidal.scan;
 
+import it.unimi.dsi.fastutil.longs.LongCollection;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Direction;
 
-import java.util.Set;
-
+/**
+ * A scanned chunk's water & shoreline columns, stored as {@link ColumnMask}s along with each column's surface height, and the sites created in the chunk.
+ * <br><br>
+ * Each chunk's water/shoreline blocks are really just a 16x16 grid plus a surface y, so this is a few hundred bytes per chunk, instead of a set with hundreds of BlockPos'.
+ * <br><br>
+ * Distant chunks may be scanned at a lower level of detail(see {@link WaterHandler#getScanStride(ChunkPos, ChunkPos)}), where only every 2nd/4th column is sampled,
+ * and fills the rest of its stride x stride block. Only the sampled columns are used for sites & waves.
+ */
 public class ScannedChunk {
     public final long chunkPos;
-    public Set<BlockPos> waters;
-    public Set<BlockPos> shorelines;
-    public Set<SitePos> sites;
+    public final int startX;
+    public final int startZ;
+
+    // columns with water as their top block
+    public final long[] waterMask;
+    // columns with a non-water, non-air top block
+    public final long[] landMask;
+    // land columns whose top block is solid(see ChunkSnapshot#solidMask)
+    public final long[] solidMask;
+    // land columns next to water columns
+    public final long[] shoreMask;
+    // y of each column's top block, indexed via ColumnMask#index
+    public final short[] heights;
+    public final SitePos[] sites;
+    // 1 for full detail, or 2/4 if only every 2nd/4th column was sampled
+    public final int stride;
+    // water columns with a neighbour at least 2 blocks lower - the top of a waterfall. Only neighbours within this chunk are checked - neighbours across the chunk edge are checked by TerrainField#isDropOff
+    public final long[] dropOffMask = ColumnMask.create();
+
+    // 16-bit strips of the water/land columns along each edge, indexed by Direction#getHorizontal - used for stitching seams with neighbouring chunks
+    public final int[] waterEdges = new int[4];
+    public final int[] landEdges = new int[4];
 
-    public ScannedChunk(ChunkPos chunkPos, Set<BlockPos> waters, Set<BlockPos> shorelines, Set<SitePos> sites) {
+    // which scan of this chunk this is - results from a scan older than the chunk's latest are stale, and get dropped
+    public int generation = 0;
+    // surface hash of the snapshot this chunk was scanned from(see ChunkSnapshot#hash)
+    public long hash = 0;
+
+    public ScannedChunk(ChunkPos chunkPos, long[] waterMask, long[] landMask, long[] solidMask, long[] shoreMask, short[] heights, SitePos[] sites, int stride) {
         this.chunkPos = chunkPos.toLong();
-        this.waters = waters;
-        this.shorelines = shorelines;
+        this.startX = chunkPos.getStartX();
+        this.startZ = chunkPos.getStartZ();
+        this.waterMask = waterMask;
+        this.landMask = landMask;
+        this.solidMask = solidMask;
+        this.shoreMask = shoreMask;
+        this.heights = heights;
         this.sites = sites;
+        this.stride = stride;
+
+        for (Direction direction : Direction.Type.HORIZONTAL) {
+            this.waterEdges[direction.getHorizontal()] = ColumnMask.edge(waterMask, direction);
+            this.landEdges[direction.getHorizontal()] = ColumnMask.edge(landMask, direction);
+        }
+        findDropOffs();
+    }
+
+    private void findDropOffs() {
+        for (int i = ColumnMask.nextSetBit(this.waterMask, 0); i >= 0; i = ColumnMask.nextSetBit(this.waterMask, i + 1)) {
+            int x = ColumnMask.getX(i);
+            int z = ColumnMask.getZ(i);
+            if (isDropTo(i, x - 1, z) || isDropTo(i, x + 1, z) || isDropTo(i, x, z - 1) || isDropTo(i, x, z + 1)) {
+                ColumnMask.set(this.dropOffMask, i);
+            }
+        }
+    }
+
+    private boolean isDropTo(int index, int x, int z) {
+        if (x < 0 || x > 15 || z < 0 || z > 15) return false;
+        int neighbour = ColumnMask.index(x, z);
+        if (!isWater(neighbour) && !isLand(neighbour)) return false; // empty column
+        return this.heights[neighbour] <= this.heights[index] - 2;
+    }
+
+    /**
+     * @return An empty scanned chunk, without any columns - used for chunks which failed to scan
+     */
+    public static ScannedChunk empty(ChunkPos chunkPos) {
+        return new ScannedChunk(chunkPos, ColumnMask.create(), ColumnMask.create(), ColumnMask.create(), ColumnMask.create(), new short[256], new SitePos[0], 1);
+    }
+
+    public int getWaterEdge(Direction direction) {
+        return this.waterEdges[direction.getHorizontal()];
+    }
+
+    public int getLandEdge(Direction direction) {
+        return this.landEdges[direction.getHorizontal()];
+    }
+
+    public boolean hasWater() {
+        return !ColumnMask.isEmpty(this.waterMask);
+    }
+
+    public boolean isWater(int index) {
+        return ColumnMask.get(this.waterMask, index);
+    }
+
+    public boolean isLand(int index) {
+        return ColumnMask.get(this.landMask, index);
+    }
+
+    public boolean isSolid(int index) {
+        return ColumnMask.get(this.solidMask, index);
+    }
+
+    public boolean isDropOff(int index) {
+        return ColumnMask.get(this.dropOffMask, index);
+    }
+
+    public boolean isShore(int index) {
+        return ColumnMask.get(this.shoreMask, index);
+    }
+
+    /**
+     * @return If the column was actually sampled, instead of copied from the sampled column of its stride x stride block - always true at full detail
+     */
+    public boolean isSample(int index) {
+        return ((ColumnMask.getX(index) | ColumnMask.getZ(index)) & (this.stride - 1)) == 0;
+    }
+
+    /**
+     * @return The BlockPos(as a long) of a column's top block
+     */
+    public long getPos(int index) {
+        return BlockPos.asLong(this.startX + ColumnMask.getX(index), this.heights[index], this.startZ + ColumnMask.getZ(index));
+    }
+
+    /**
+     * Adds all water blocks(as longs via BlockPos#asLong) to a collection
+     */
+    public void collectWaters(LongCollection out) {
+        for (int i = ColumnMask.nextSetBit(this.waterMask, 0); i >= 0; i = ColumnMask.nextSetBit(this.waterMask, i + 1)) {
+            out.add(getPos(i));
+        }
+    }
+
+    /**
+     * Adds all shoreline blocks(as longs via BlockPos#asLong) to a collection
+     */
+    public void collectShorelines(LongCollection out) {
+        for (int i = ColumnMask.nextSetBit(this.shoreMask, 0); i >= 0; i = ColumnMask.nextSetBit(this.shoreMask, i + 1)) {
+            out.add(getPos(i));
+        }
+    }
+
+    /**
+     * @return The column index of a BlockPos(as a long) - assumes the BlockPos is within this chunk!
+     */
+    public static int indexOf(long pos) {
+        return ColumnMask.index(BlockPos.unpackLongX(pos) & 15, BlockPos.unpackLongZ(pos) & 15);
     }
 }
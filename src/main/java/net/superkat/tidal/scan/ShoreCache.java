@@ -0,0 +1,307 @@
+package net.superkat.tidal.scan;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ServerInfo;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.WorldSavePath;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.superkat.tidal.Tidal;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent on-disk cache of {@link ScannedChunk}s, so chunks which haven't changed since they were last scanned don't have to be scanned again after rejoining, changing dimensions, or f3+a.
+ * <br><br>
+ * Stored under <code>.minecraft/tidal/cache/&lt;server address or world name&gt;/&lt;dimension&gt;</code>, split into region files of 32x32 chunks, similar to vanilla's region files.
+ * Each region file starts with a header of every chunk's offset & length, followed by the chunks' data. Chunks are read with positional reads, and new data is always appended to the end.
+ * <br><br>
+ * Each chunk is stored alongside a hash of its surface columns(see {@link ChunkSnapshot#hash}). If the hash doesn't match when loading, the chunk changed since, and gets scanned again.
+ */
+public class ShoreCache {
+    // bump whenever the stored format or the scanner's results change, to throw out old caches
+    public static final int VERSION = 5;
+
+    private static final int MAGIC = 0x5449444C; // "TIDL"
+    private static final int REGION_SIZE = 32;
+    private static final int ENTRY_BYTES = 12;
+    private static final int HEADER_BYTES = 8 + REGION_SIZE * REGION_SIZE * ENTRY_BYTES;
+
+    // all caches with open region files, so they can be closed on disconnect/game close
+    private static final Set<ShoreCache> OPEN = ConcurrentHashMap.newKeySet();
+
+    public final Path directory;
+    private final Long2ObjectOpenHashMap<RegionFile> regions = new Long2ObjectOpenHashMap<>();
+
+    public ShoreCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return A ShoreCache for the world's server/singleplayer world & dimension, or null if the server/world can't be figured out
+     */
+    @Nullable
+    public static ShoreCache create(ClientWorld world) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        String key;
+        if (client.getServer() != null) {
+            key = "singleplayer/" + sanitize(client.getServer().getSavePath(WorldSavePath.ROOT).normalize().getFileName().toString());
+        } else {
+            ServerInfo serverInfo = client.getCurrentServerEntry();
+            if (serverInfo == null) return null;
+            key = "servers/" + sanitize(serverInfo.address);
+        }
+
+        Identifier dimension = world.getRegistryKey().getValue();
+        Path directory = FabricLoader.getInstance().getGameDir().resolve(Tidal.MOD_ID).resolve("cache")
+                .resolve(key).resolve(sanitize(dimension.getNamespace())).resolve(sanitize(dimension.getPath()));
+        return new ShoreCache(directory);
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^a-zA-Z0-9._-]", "_");
+    }
+
+    /**
+     * @param chunkPos The chunk to load
+     * @param hash The chunk's current surface hash
+     * @return The cached scan of the chunk, or null if it isn't cached or has changed since
+     */
+    @Nullable
+    public ScannedChunk load(ChunkPos chunkPos, long hash) {
+        try {
+            RegionFile region = getRegion(chunkPos, false);
+            if (region == null) return null;
+            ByteBuffer data = region.read(localIndex(chunkPos));
+            if (data == null || data.getLong() != hash) return null;
+            return readChunk(chunkPos, data);
+        } catch (IOException | RuntimeException e) {
+            Tidal.LOGGER.warn("Failed to load cached Tidal chunk {}", chunkPos, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param chunk The scanned chunk to save
+     * @param hash The chunk's surface hash at the time of the scan
+     */
+    public void save(ScannedChunk chunk, long hash) {
+        ChunkPos chunkPos = new ChunkPos(chunk.chunkPos);
+        try {
+            RegionFile region = getRegion(chunkPos, true);
+            region.write(localIndex(chunkPos), writeChunk(chunk, hash));
+        } catch (IOException | RuntimeException e) {
+            Tidal.LOGGER.warn("Failed to save Tidal chunk {} to cache", chunkPos, e);
+        }
+    }
+
+    /**
+     * Closes all open region files - they're reopened the next time they're needed.
+     */
+    public synchronized void close() {
+        for (RegionFile region : this.regions.values()) {
+            region.close();
+        }
+        this.regions.clear();
+        OPEN.remove(this);
+    }
+
+    public static void closeAll() {
+        for (ShoreCache cache : OPEN) {
+            cache.close();
+        }
+    }
+
+    /**
+     * Only finding/opening the region file is locked for the whole cache - reads & writes only lock their own region file.
+     */
+    @Nullable
+    private synchronized RegionFile getRegion(ChunkPos chunkPos, boolean create) throws IOException {
+        long regionPos = ChunkPos.toLong(chunkPos.getRegionX(), chunkPos.getRegionZ());
+        RegionFile region = this.regions.get(regionPos);
+        if (region != null) return region;
+
+        Path path = this.directory.resolve("r." + chunkPos.getRegionX() + "." + chunkPos.getRegionZ() + ".tidal");
+        if (!create && !Files.exists(path)) return null;
+        Files.createDirectories(this.directory);
+        region = new RegionFile(path);
+        this.regions.put(regionPos, region);
+        OPEN.add(this);
+        return region;
+    }
+
+    private static int localIndex(ChunkPos chunkPos) {
+        return chunkPos.getRegionRelativeX() + chunkPos.getRegionRelativeZ() * REGION_SIZE;
+    }
+
+    private static ByteBuffer writeChunk(ScannedChunk chunk, long hash) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 4 + ColumnMask.LONGS * 4 * 8 + 256 * 2 + 4 + chunk.sites.length * 12);
+        buffer.putLong(hash);
+        buffer.putInt(chunk.stride);
+        for (long bits : chunk.waterMask) buffer.putLong(bits);
+        for (long bits : chunk.landMask) buffer.putLong(bits);
+        for (long bits : chunk.solidMask) buffer.putLong(bits);
+        for (long bits : chunk.shoreMask) buffer.putLong(bits);
+        for (short height : chunk.heights) buffer.putShort(height);
+        buffer.putInt(chunk.sites.length);
+        for (SitePos site : chunk.sites) {
+            buffer.putInt(site.getX()).putInt(site.getY()).putInt(site.getZ());
+        }
+        return buffer.flip();
+    }
+
+    private static ScannedChunk readChunk(ChunkPos chunkPos, ByteBuffer buffer) {
+        int stride = buffer.getInt();
+        long[] waterMask = readMask(buffer);
+        long[] landMask = readMask(buffer);
+        long[] solidMask = readMask(buffer);
+        long[] shoreMask = readMask(buffer);
+        short[] heights = new short[256];
+        for (int i = 0; i < heights.length; i++) heights[i] = buffer.getShort();
+        SitePos[] sites = new SitePos[buffer.getInt()];
+        for (int i = 0; i < sites.length; i++) {
+            sites[i] = new SitePos(new BlockPos(buffer.getInt(), buffer.getInt(), buffer.getInt()));
+        }
+        return new ScannedChunk(chunkPos, waterMask, landMask, solidMask, shoreMask, heights, sites, stride);
+    }
+
+    private static long[] readMask(ByteBuffer buffer) {
+        long[] mask = ColumnMask.create();
+        for (int i = 0; i < mask.length; i++) mask[i] = buffer.getLong();
+        return mask;
+    }
+
+    /**
+     * One region file - a header with each chunk's offset(long) & length(int, 0 if missing), followed by the chunk data.<br>
+     * Rewritten chunks are appended instead of overwritten, so the file is compacted when it's opened if most of it is outdated data.
+     * <br><br>
+     * The header is kept in memory, and chunks are read with positional reads instead of mapping the file, so nothing keeps the file mapped while it's appended to or truncated(which some platforms refuse).
+     * Each region file has its own lock, so scan threads only wait on each other when they use the same region.
+     */
+    private static class RegionFile {
+        public final Path path;
+        private final FileChannel channel;
+        private final long[] offsets = new long[REGION_SIZE * REGION_SIZE];
+        private final int[] lengths = new int[REGION_SIZE * REGION_SIZE];
+        private long size;
+        private boolean closed = false;
+
+        public RegionFile(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            if (this.channel.size() < HEADER_BYTES || readFully(header, 0) < HEADER_BYTES
+                    || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                this.channel.truncate(0);
+                ByteBuffer newHeader = ByteBuffer.allocate(HEADER_BYTES);
+                newHeader.putInt(MAGIC).putInt(VERSION);
+                this.channel.write(newHeader.rewind(), 0);
+                this.size = HEADER_BYTES;
+                return;
+            }
+
+            this.size = this.channel.size();
+            for (int i = 0; i < REGION_SIZE * REGION_SIZE; i++) {
+                long offset = header.getLong(entryPos(i));
+                int length = header.getInt(entryPos(i) + 8);
+                if (length <= 0 || offset < HEADER_BYTES || offset + length > this.size) continue;
+                this.offsets[i] = offset;
+                this.lengths[i] = length;
+            }
+            compactIfNeeded();
+        }
+
+        private static int entryPos(int index) {
+            return 8 + index * ENTRY_BYTES;
+        }
+
+        private int readFully(ByteBuffer buffer, long position) throws IOException {
+            int read = 0;
+            while (buffer.hasRemaining()) {
+                int n = this.channel.read(buffer, position + read);
+                if (n < 0) break;
+                read += n;
+            }
+            return read;
+        }
+
+        @Nullable
+        public synchronized ByteBuffer read(int index) throws IOException {
+            if (this.closed) return null;
+            int length = this.lengths[index];
+            if (length <= 0) return null;
+
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            if (readFully(buffer, this.offsets[index]) < length) return null;
+            return buffer.flip();
+        }
+
+        public synchronized void write(int index, ByteBuffer data) throws IOException {
+            if (this.closed) return;
+            long offset = this.size;
+            int length = data.remaining();
+            while (data.hasRemaining()) {
+                this.channel.write(data, offset + (length - data.remaining()));
+            }
+            this.size = offset + length;
+
+            ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES).putLong(offset).putInt(length);
+            this.channel.write(entry.flip(), entryPos(index));
+            this.offsets[index] = offset;
+            this.lengths[index] = length;
+        }
+
+        private void compactIfNeeded() throws IOException {
+            // a chunk is only a few kilobytes at most, so even a region full of them fits in an int
+            int liveBytes = 0;
+            for (int length : this.lengths) liveBytes += length;
+            if (this.size - HEADER_BYTES <= (long) liveBytes * 2) return;
+
+            // read all live chunks, then rewrite the file with only those - the header goes last, so a half written file is thrown out next time
+            ByteBuffer newHeader = ByteBuffer.allocate(HEADER_BYTES);
+            ByteBuffer data = ByteBuffer.allocate(liveBytes);
+            long[] newOffsets = new long[this.offsets.length];
+            for (int i = 0; i < REGION_SIZE * REGION_SIZE; i++) {
+                int length = this.lengths[i];
+                if (length <= 0) continue;
+
+                newOffsets[i] = HEADER_BYTES + data.position();
+                newHeader.putLong(entryPos(i), newOffsets[i]);
+                newHeader.putInt(entryPos(i) + 8, length);
+                readFully(data.slice(data.position(), length), this.offsets[i]);
+                data.position(data.position() + length);
+            }
+
+            this.channel.truncate(0);
+            data.flip();
+            while (data.hasRemaining()) {
+                this.channel.write(data, HEADER_BYTES + data.position());
+            }
+            newHeader.putInt(0, MAGIC).putInt(4, VERSION);
+            this.channel.write(newHeader, 0);
+            System.arraycopy(newOffsets, 0, this.offsets, 0, newOffsets.length);
+            this.size = HEADER_BYTES + liveBytes;
+        }
+
+        public synchronized void close() {
+            this.closed = true;
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                Tidal.LOGGER.warn("Failed to close Tidal cache region file {}", this.path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package net.superkat.tidal.scan;
+
+import com.google.common.collect.Iterables;
+import it.unimi.dsi.fastutil.ints.IntObjectPair;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.superkat.tidal.config.TidalConfig;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable snapshot of all scanned water & sites, which is what everything outside the scan package reads from(wave spawning, debug renderers).
+ * <br><br>
+ * Snapshots are built off-thread by the {@link ShoreIndexBuilder}, and swapped in on the main thread all at once via {@link WaterHandler#index}, so readers never need to lock, and never see a half built state.
+ * The maps here are never changed after being built - a newer snapshot is built instead, which shares everything that didn't change with this one.
+ * <br><br>
+ * The {@link SitePos}' positions are still shared between snapshots, but their center & yaw are swapped in whole too(see {@link SitePos#getShape()}).
+ */
+public class ShoreIndex {
+    public static final ShoreIndex EMPTY = new ShoreIndex(new ChunkMap<>(), new SiteIndex(), new ChunkMap<>(), new ChunkMap<>(), new ChunkMap<>(), new ChunkMap<>(), new SpawnPlan[1][0], false);
+
+    // Which SitePos is closest to all scanned water columns, and how far away it is - split by chunk
+    public final ChunkMap<WaterSiteChunk> waterCache;
+
+    // Grid of all sites, bucketed by chunk - used for water which isn't in the waterCache
+    public final SiteIndex siteIndex;
+
+    // All scanned chunks & seams between them(keyed like ShoreIndexBuilder's) - mostly for debug
+    public final ChunkMap<ScannedChunk> chunks;
+    public final ChunkMap<ChunkSeam> eastSeams;
+    public final ChunkMap<ChunkSeam> southSeams;
+
+    // Every scanned column's height & water/solid bits - used for wave collisions
+    public final TerrainField terrain;
+
+    // Each chunk's wave spawn plans, made when the chunk's water or sites last changed
+    public final ChunkMap<SpawnPlan[]> spawnPlans;
+    // All spawn plans, bucketed by their phase - so each tick only goes through the plans spawning on it
+    public final SpawnPlan[][] plansByPhase;
+
+    // boolean for if any chunk has been scanned & merged in since joining/chunk reloading
+    public final boolean built;
+
+    /**
+     * The maps are snapshotted(see {@link ChunkMap#snapshot()}) instead of copied, so only the regions which changed since the last ShoreIndex are copied.
+     *
+     * @param plansByPhase The spawn plans bucketed by phase - never changed afterward, only replaced(see {@link ShoreIndexBuilder#bucketPlansByPhase()})
+     */
+    public ShoreIndex(ChunkMap<WaterSiteChunk> waterCache, SiteIndex siteIndex, ChunkMap<ScannedChunk> chunks, ChunkMap<ChunkSeam> eastSeams, ChunkMap<ChunkSeam> southSeams,
+                      ChunkMap<SpawnPlan[]> spawnPlans, SpawnPlan[][] plansByPhase, boolean built) {
+        this.waterCache = waterCache.snapshot();
+        this.siteIndex = siteIndex;
+        this.chunks = chunks.snapshot();
+        this.eastSeams = eastSeams.snapshot();
+        this.southSeams = southSeams.snapshot();
+        this.terrain = new TerrainField(this.chunks);
+        this.spawnPlans = spawnPlans.snapshot(); // the plan arrays are never changed, only replaced
+        this.plansByPhase = plansByPhase;
+        this.built = built;
+    }
+
+    /**
+     * @return All sites, including sites along seams - only for debugging, as it goes through every chunk
+     */
+    public List<SitePos> getAllSites() {
+        List<SitePos> sites = new ObjectArrayList<>();
+        for (ScannedChunk chunk : this.chunks.values()) {
+            Collections.addAll(sites, chunk.sites);
+        }
+        for (ChunkSeam seam : Iterables.concat(this.eastSeams.values(), this.southSeams.values())) {
+            Collections.addAll(sites, seam.firstSites);
+            Collections.addAll(sites, seam.secondSites);
+        }
+        return sites;
+    }
+
+    /**
+     * Adds all water blocks that are a specified distance away from their closest SitePos within a ChunkPos to a collection. Waves spawn from {@link ShoreIndex#getSpawnPlans(long)} instead, so this is only for debugging.
+     *
+     * @param chunkPos The ChunkPos to get the water blocks from
+     * @param distance The distance to check for
+     * @param out The collection to add the water blocks(as longs) to
+     */
+    public void collectWatersAtDistance(ChunkPos chunkPos, int distance, LongCollection out) {
+        WaterSiteChunk siteChunk = this.waterCache.get(chunkPos.toLong());
+        if (siteChunk == null) return;
+        siteChunk.collectWatersAtDistance(distance, out);
+    }
+
+    /**
+     * @param chunkPosL The ChunkPos(as a long) to get the spawn plans of
+     * @return The chunk's wave spawn plans, or {@link SpawnPlan#NONE}
+     */
+    public SpawnPlan[] getSpawnPlans(long chunkPosL) {
+        return this.spawnPlans.getOrDefault(chunkPosL, SpawnPlan.NONE);
+    }
+
+    /**
+     * @param time The world time
+     * @return All spawn plans(in every chunk) whose phase is this tick of the wave cycle
+     */
+    public SpawnPlan[] getSpawnPlansForTick(long time) {
+        return this.plansByPhase[(int) Math.floorMod(time, (long) this.plansByPhase.length)];
+    }
+
+    /**
+     * Returns the closest SitePos of a BlockPos(assumed to be, but technically doesn't have to be, a water block).<br>
+     * Scanned water columns use their cached site, while anything else is looked up in the {@link ShoreIndex#siteIndex}, only looking {@link TidalConfig#siteSearchChunkRadius} chunks away.
+     *
+     * @param pos BlockPos(as a long) to use for finding the closest SitePos.
+     * @return The BlockPos' closest SitePos, or null if no site is close enough.
+     */
+    @Nullable
+    public SitePos getSiteForPos(long pos) {
+        long chunkPosL = ChunkPos.toLong(BlockPos.unpackLongX(pos) >> 4, BlockPos.unpackLongZ(pos) >> 4);
+        WaterSiteChunk siteChunk = this.waterCache.get(chunkPosL);
+        if (siteChunk != null) {
+            int index = ScannedChunk.indexOf(pos);
+            if (siteChunk.isOpenOcean(index)) return null; // no site close enough anyway
+            SitePos site = siteChunk.getSite(index);
+            if (site != null) return site;
+        }
+
+        // alt distance formulas for future config would go in SiteIndex#findClosest
+        IntObjectPair<SitePos> siteDistPair = this.siteIndex.findClosest(BlockPos.unpackLongX(pos), BlockPos.unpackLongZ(pos), TidalConfig.siteSearchChunkRadius);
+        return siteDistPair == null ? null : siteDistPair.second();
+    }
+
+    @Nullable
+    public SitePos getSiteForPos(BlockPos pos) {
+        return getSiteForPos(pos.asLong());
+    }
+
+    /**
+     * @param pos BlockPos(as a long) to check
+     * @return If the position is scanned water which is too far from any shore to have a site(see {@link TidalConfig#openOceanDistance}) - could be used for ambient open water effects
+     */
+    public boolean isOpenOcean(long pos) {
+        WaterSiteChunk siteChunk = this.waterCache.get(ChunkPos.toLong(BlockPos.unpackLongX(pos) >> 4, BlockPos.unpackLongZ(pos) >> 4));
+        return siteChunk != null && siteChunk.isOpenOcean(ScannedChunk.indexOf(pos));
+    }
+}
@@ -0,0 +1,476 @@
+package net.superkat.tidal.scan;
+
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.Direction;
+import net.superkat.tidal.config.TidalConfig;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The mutable side of the {@link ShoreIndex} - holds all scanned chunks, their seams & sites, and each water column's closest site.
+ * <br><br>
+ * The {@link WaterHandler} never touches this directly. It queues updates(chunks scanned/patched/removed), which are all applied one after another on the {@link ScanExecutor},
+ * and once they're applied, a new ShoreIndex is built from this and handed back to the main thread. Only one thread ever uses the builder at a time.
+ * <br><br>
+ * Updated chunks are only marked dirty - the flood fill to reassign their water's closest sites(see {@link ShoreIndexBuilder#reassignSites(LongSet)}) runs once per build, for all updates since the last build.
+ *
+ * @see WaterHandler#scheduleBuild()
+ */
+public class ShoreIndexBuilder {
+    public final WaterHandler handler;
+
+    // All scanned chunks - each chunk's water/shoreline columns & sites(the sites are used to determine angle of area)
+    public final ChunkMap<ScannedChunk> scannedChunks = new ChunkMap<>();
+
+    // Borders between neighbouring scanned chunks, keyed by the west chunk(eastSeams) or the north chunk(southSeams) - used for shorelines & sites along chunk edges
+    public final ChunkMap<ChunkSeam> eastSeams = new ChunkMap<>();
+    public final ChunkMap<ChunkSeam> southSeams = new ChunkMap<>();
+
+    // Grid of all sites, bucketed by chunk - used for quickly finding a water block's closest site
+    public final SiteIndex siteIndex = new SiteIndex();
+
+    // Keep track of which SitePos is closest to all scanned water columns, and how far away it is - split by chunk
+    public final ChunkMap<WaterSiteChunk> waterCache = new ChunkMap<>();
+
+    // Which chunks in the waterCache have water of each site - so only those chunks need checking when a site changes or is removed
+    public final Reference2ObjectOpenHashMap<SitePos, LongOpenHashSet> siteChunks = new Reference2ObjectOpenHashMap<>();
+
+    // Sites removed from all scanned chunks & seams since the last build, whose water has to be reassigned(see ShoreIndexBuilder#reassignStaleChunks)
+    public final ReferenceOpenHashSet<SitePos> removedSites = new ReferenceOpenHashSet<>();
+
+    // Chunks changed since the last build, whose water(and the water around them) needs its closest sites reassigned
+    public final LongOpenHashSet dirtyChunks = new LongOpenHashSet();
+
+    // Sites which gained/lost water since the last build, and need their center & yaw recalculated
+    public final List<SitePos> dirtySites = new ObjectArrayList<>();
+
+    // Each chunk's wave spawn plans - only chunks without any plans are left out
+    public final ChunkMap<SpawnPlan[]> spawnPlans = new ChunkMap<>();
+
+    // All spawn plans bucketed by their phase, and which phases changed since the last build - only those are copied into the next ShoreIndex's plansByPhase
+    public final List<ReferenceOpenHashSet<SpawnPlan>> phasePlans = new ObjectArrayList<>();
+    public final IntOpenHashSet dirtyPhases = new IntOpenHashSet();
+    private SpawnPlan[][] plansByPhase = new SpawnPlan[0][];
+
+    // Chunks whose water was reassigned since the last build, and need their spawn plans remade
+    public final LongOpenHashSet replanChunks = new LongOpenHashSet();
+
+    // boolean for if any chunk has been scanned & merged in since joining/chunk reloading
+    public boolean built = false;
+
+    public ShoreIndexBuilder(WaterHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Adds a finished scan, replacing the chunk's previous scan if it had one, and stitches it to its neighbours.
+     */
+    public void putChunk(ScannedChunk chunk) {
+        ScannedChunk old = this.scannedChunks.put(chunk.chunkPos, chunk);
+        this.replaceSites(old == null ? null : old.sites, chunk.sites);
+        this.stitchSeams(chunk.chunkPos);
+        this.dirtyChunks.add(chunk.chunkPos);
+        this.built = true;
+    }
+
+    /**
+     * Patches a few columns of an already scanned chunk(see {@link ChunkScanner#patch(ScannedChunk, IntCollection)}). The snapshot is released afterward.
+     *
+     * @param snapshot The chunk's snapshot, taken on the main thread after its block updates
+     * @param columns The column indexes to re-sample
+     */
+    public void patchChunk(ChunkSnapshot snapshot, IntCollection columns) {
+        try {
+            long chunkPosL = snapshot.chunkPos.toLong();
+            ScannedChunk old = this.scannedChunks.get(chunkPosL);
+            if (old == null) return; // removed since
+
+            ChunkScanner chunkScanner = new ChunkScanner(this.handler, snapshot);
+            ScannedChunk patched = chunkScanner.patch(old, columns);
+            this.scannedChunks.put(chunkPosL, patched);
+            this.replaceSites(old.sites, patched.sites);
+            this.stitchSeams(chunkPosL);
+            this.dirtyChunks.add(chunkPosL);
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Removes a chunk's scan, seams, water & sites.
+     *
+     * @param chunkPosL The ChunkPos(as a long) to remove
+     */
+    public void removeChunk(long chunkPosL) {
+        ScannedChunk chunk = this.scannedChunks.remove(chunkPosL);
+        if (chunk != null) this.replaceSites(chunk.sites, null);
+        WaterSiteChunk siteChunk = this.setWaterChunk(chunkPosL, null);
+        if (siteChunk != null) {
+            this.replanChunks.add(chunkPosL);
+            // sites from other chunks may still be around, so they shouldn't keep this chunk's water
+            for (int i = 0; i < 256; i++) {
+                SitePos site = siteChunk.getSite(i);
+                if (site == null) continue;
+                if (site.removePos(siteChunk.scan.getPos(i))) this.dirtySites.add(site);
+            }
+        }
+        this.siteIndex.removeChunk(chunkPosL);
+        if (chunk != null) {
+            this.stitchSeams(chunkPosL); // removes its seams, and the seam sites from its neighbours
+            this.dirtyChunks.add(chunkPosL);
+        }
+    }
+
+    /**
+     * @return A new immutable ShoreIndex of everything in this builder, after reassigning the closest sites of all dirty chunks, and recalculating all dirty sites.
+     */
+    public ShoreIndex build() {
+        if (!this.dirtyChunks.isEmpty()) {
+            reassignSites(this.dirtyChunks);
+            this.dirtyChunks.clear();
+        }
+
+        ReferenceOpenHashSet<SitePos> changedSites = new ReferenceOpenHashSet<>();
+        for (SitePos site : this.dirtySites) {
+            site.updateCenter();
+            changedSites.add(site);
+        }
+        this.dirtySites.clear();
+        updateSpawnPlans(changedSites);
+
+        // everything is snapshotted instead of copied, so this only costs as much as what changed since the last build
+        return new ShoreIndex(this.waterCache, this.siteIndex.copy(), this.scannedChunks, this.eastSeams, this.southSeams, this.spawnPlans, this.bucketPlansByPhase(), this.built);
+    }
+
+    /**
+     * Updates which sites exist after a chunk or seam's sites are replaced. Sites which aren't in the new sites are removed, and their water is reassigned next build.
+     *
+     * @param oldSites The chunk/seam's previous sites, or null
+     * @param newSites The chunk/seam's new sites, or null if it was removed
+     */
+    private void replaceSites(SitePos @Nullable [] oldSites, SitePos @Nullable [] newSites) {
+        if (oldSites != null) {
+            for (SitePos site : oldSites) {
+                if (newSites == null || !containsSite(newSites, site)) this.removedSites.add(site);
+            }
+        }
+        if (newSites != null) {
+            for (SitePos site : newSites) {
+                this.removedSites.remove(site);
+            }
+        }
+    }
+
+    private static boolean containsSite(SitePos[] sites, SitePos site) {
+        for (SitePos check : sites) {
+            if (check == site) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Replaces a chunk in the {@link ShoreIndexBuilder#waterCache}, keeping {@link ShoreIndexBuilder#siteChunks} up to date with the old & new chunk's palettes.
+     *
+     * @param siteChunk The chunk's new water, or null to remove it
+     * @return The chunk's previous water, or null
+     */
+    @Nullable
+    private WaterSiteChunk setWaterChunk(long chunkPosL, @Nullable WaterSiteChunk siteChunk) {
+        WaterSiteChunk old = siteChunk == null ? this.waterCache.remove(chunkPosL) : this.waterCache.put(chunkPosL, siteChunk);
+        // each site chunk comes fresh from a flood fill, so its palette only has sites its columns use
+        if (old != null) {
+            for (SitePos site : old.palette) {
+                LongOpenHashSet chunks = this.siteChunks.get(site);
+                if (chunks != null && chunks.remove(chunkPosL) && chunks.isEmpty()) this.siteChunks.remove(site);
+            }
+        }
+        if (siteChunk != null) {
+            for (SitePos site : siteChunk.palette) {
+                this.siteChunks.computeIfAbsent(site, s -> new LongOpenHashSet()).add(chunkPosL);
+            }
+        }
+        return old;
+    }
+
+    /**
+     * Remakes the spawn plans(see {@link SpawnPlan#plan(WaterSiteChunk, int)}) of all chunks whose water was reassigned, or which have water of a site whose center & yaw changed.
+     * Every other chunk keeps its plans from the last build.
+     *
+     * @param changedSites The sites recalculated this build
+     */
+    public void updateSpawnPlans(Set<SitePos> changedSites) {
+        for (SitePos site : changedSites) {
+            LongOpenHashSet chunks = this.siteChunks.get(site);
+            if (chunks != null) this.replanChunks.addAll(chunks);
+        }
+
+        this.resizePhasePlans();
+        for (LongIterator iterator = this.replanChunks.iterator(); iterator.hasNext(); ) {
+            long chunkPosL = iterator.nextLong();
+            WaterSiteChunk siteChunk = this.waterCache.get(chunkPosL);
+            SpawnPlan[] plans = siteChunk == null ? SpawnPlan.NONE : SpawnPlan.plan(siteChunk, TidalConfig.waveDistFromShore);
+            SpawnPlan[] oldPlans = plans.length == 0 ? this.spawnPlans.remove(chunkPosL) : this.spawnPlans.put(chunkPosL, plans);
+
+            int cycle = this.phasePlans.size();
+            if (oldPlans != null) {
+                for (SpawnPlan plan : oldPlans) {
+                    this.phasePlans.get(plan.phase() % cycle).remove(plan);
+                    this.dirtyPhases.add(plan.phase() % cycle);
+                }
+            }
+            for (SpawnPlan plan : plans) {
+                this.phasePlans.get(plan.phase() % cycle).add(plan);
+                this.dirtyPhases.add(plan.phase() % cycle);
+            }
+        }
+        this.replanChunks.clear();
+    }
+
+    /**
+     * Rebuckets every plan if the wave cycle's length(see {@link TidalConfig#waveTicks}) changed since the last build.
+     */
+    private void resizePhasePlans() {
+        int cycle = Math.max(TidalConfig.waveTicks, 1);
+        if (this.phasePlans.size() == cycle) return;
+
+        this.phasePlans.clear();
+        this.dirtyPhases.clear();
+        for (int phase = 0; phase < cycle; phase++) {
+            this.phasePlans.add(new ReferenceOpenHashSet<>());
+            this.dirtyPhases.add(phase);
+        }
+        for (SpawnPlan[] plans : this.spawnPlans.values()) {
+            for (SpawnPlan plan : plans) {
+                this.phasePlans.get(plan.phase() % cycle).add(plan);
+            }
+        }
+        this.plansByPhase = new SpawnPlan[cycle][];
+    }
+
+    /**
+     * @return All spawn plans bucketed by phase, for the next {@link ShoreIndex#plansByPhase}. Only the phases which changed since the last build are remade - the rest are shared with the last ShoreIndex.
+     */
+    public SpawnPlan[][] bucketPlansByPhase() {
+        this.resizePhasePlans();
+        if (this.dirtyPhases.isEmpty()) return this.plansByPhase;
+
+        SpawnPlan[][] buckets = this.plansByPhase.clone();
+        for (IntIterator iterator = this.dirtyPhases.iterator(); iterator.hasNext(); ) {
+            int phase = iterator.nextInt();
+            ReferenceOpenHashSet<SpawnPlan> plans = this.phasePlans.get(phase);
+            buckets[phase] = plans.isEmpty() ? SpawnPlan.NONE : plans.toArray(SpawnPlan.NONE);
+        }
+        this.dirtyPhases.clear();
+        this.plansByPhase = buckets;
+        return buckets;
+    }
+
+    /**
+     * @return All sites of all scanned chunks, including sites along their seams
+     */
+    public List<SitePos> getAllSites() {
+        List<SitePos> allSites = new ObjectArrayList<>();
+        for (ScannedChunk chunk : this.scannedChunks.values()) {
+            allSites.addAll(this.getChunkSites(chunk.chunkPos));
+        }
+        return allSites;
+    }
+
+    /**
+     * @param chunkPosL The ChunkPos(as a long) to get the sites of
+     * @return The chunk's own sites, plus the sites created along its seams which are within the chunk
+     */
+    public List<SitePos> getChunkSites(long chunkPosL) {
+        ScannedChunk chunk = this.scannedChunks.get(chunkPosL);
+        if (chunk == null) return List.of();
+
+        List<SitePos> sites = new ObjectArrayList<>(chunk.sites);
+        int chunkX = ChunkPos.getPackedX(chunkPosL);
+        int chunkZ = ChunkPos.getPackedZ(chunkPosL);
+        ChunkSeam seam;
+        if ((seam = this.eastSeams.get(chunkPosL)) != null) Collections.addAll(sites, seam.firstSites);
+        if ((seam = this.eastSeams.get(ChunkPos.toLong(chunkX - 1, chunkZ))) != null) Collections.addAll(sites, seam.secondSites);
+        if ((seam = this.southSeams.get(chunkPosL)) != null) Collections.addAll(sites, seam.firstSites);
+        if ((seam = this.southSeams.get(ChunkPos.toLong(chunkX, chunkZ - 1))) != null) Collections.addAll(sites, seam.secondSites);
+        return sites;
+    }
+
+    /**
+     * Stitches a scanned chunk's seams with all of its scanned neighbours, then updates the {@link ShoreIndexBuilder#siteIndex} for the chunk & its neighbours.<br>
+     * Seams with neighbours which aren't scanned(anymore) are removed.
+     *
+     * @param chunkPosL The ChunkPos(as a long) to stitch
+     */
+    public void stitchSeams(long chunkPosL) {
+        int chunkX = ChunkPos.getPackedX(chunkPosL);
+        int chunkZ = ChunkPos.getPackedZ(chunkPosL);
+        long west = ChunkPos.toLong(chunkX - 1, chunkZ);
+        long east = ChunkPos.toLong(chunkX + 1, chunkZ);
+        long north = ChunkPos.toLong(chunkX, chunkZ - 1);
+        long south = ChunkPos.toLong(chunkX, chunkZ + 1);
+
+        stitchSeam(this.eastSeams, west, chunkPosL, Direction.Axis.X);
+        stitchSeam(this.eastSeams, chunkPosL, east, Direction.Axis.X);
+        stitchSeam(this.southSeams, north, chunkPosL, Direction.Axis.Z);
+        stitchSeam(this.southSeams, chunkPosL, south, Direction.Axis.Z);
+
+        updateSiteIndex(chunkPosL);
+        updateSiteIndex(west);
+        updateSiteIndex(east);
+        updateSiteIndex(north);
+        updateSiteIndex(south);
+    }
+
+    private void stitchSeam(ChunkMap<ChunkSeam> seams, long firstChunk, long secondChunk, Direction.Axis axis) {
+        ScannedChunk first = this.scannedChunks.get(firstChunk);
+        ScannedChunk second = this.scannedChunks.get(secondChunk);
+        ChunkSeam old = seams.get(firstChunk);
+        ChunkSeam seam = first == null || second == null ? null : ChunkSeam.stitch(first, second, axis, old);
+        if (seam == null) {
+            seams.remove(firstChunk);
+        } else {
+            seams.put(firstChunk, seam);
+        }
+
+        if (old != null) {
+            this.replaceSites(old.firstSites, seam == null ? null : seam.firstSites);
+            this.replaceSites(old.secondSites, seam == null ? null : seam.secondSites);
+        }
+    }
+
+    private void updateSiteIndex(long chunkPosL) {
+        List<SitePos> sites = this.getChunkSites(chunkPosL);
+        if (sites.isEmpty()) {
+            this.siteIndex.removeChunk(chunkPosL);
+        } else {
+            this.siteIndex.putChunk(chunkPosL, sites);
+        }
+    }
+
+    /**
+     * Reassigns the closest sites of the water in & around some chunks, updating the {@link ShoreIndexBuilder#waterCache} and the positions of only the sites which gained/lost water(which are then marked dirty).
+     * <br><br>
+     * The flood fill covers 2 chunks around each chunk, so sites from nearby chunks can still reach in, but only the results of the chunks directly around each chunk are kept.
+     * <br><br>
+     * Water further away can still have one of the chunks' old sites as its closest, if the sites were removed or replaced(unloaded, rescanned, patched, or scanned at a different level of detail).
+     * Afterward, every chunk still using a site which no longer exists is reassigned too(see {@link ShoreIndexBuilder#reassignStaleChunks()}).
+     *
+     * @param chunks The ChunkPos'(as longs) whose water may have changed
+     */
+    public void reassignSites(LongSet chunks) {
+        LongOpenHashSet fillChunks = new LongOpenHashSet();
+        LongOpenHashSet writeChunks = new LongOpenHashSet();
+        for (LongIterator iterator = chunks.iterator(); iterator.hasNext(); ) {
+            long chunkPosL = iterator.nextLong();
+            int chunkX = ChunkPos.getPackedX(chunkPosL);
+            int chunkZ = ChunkPos.getPackedZ(chunkPosL);
+            for (int dx = -2; dx <= 2; dx++) {
+                for (int dz = -2; dz <= 2; dz++) {
+                    long neighbour = ChunkPos.toLong(chunkX + dx, chunkZ + dz);
+                    fillChunks.add(neighbour);
+                    if (Math.abs(dx) <= 1 && Math.abs(dz) <= 1) writeChunks.add(neighbour);
+                }
+            }
+        }
+
+        reassign(fillChunks, writeChunks);
+        reassignStaleChunks();
+    }
+
+    /**
+     * Reassigns every chunk in the {@link ShoreIndexBuilder#waterCache} which still has water assigned to a site that isn't in any scanned chunk or seam anymore(see {@link ShoreIndexBuilder#removedSites}).
+     * Each stale chunk is filled with the chunks directly around it, same as {@link ShoreIndexBuilder#reassignSites(LongSet)}, but only its own results are kept.
+     * <br><br>
+     * Only the chunks which had water of a removed site are checked(see {@link ShoreIndexBuilder#siteChunks}), instead of every chunk.
+     */
+    public void reassignStaleChunks() {
+        LongOpenHashSet fillChunks = new LongOpenHashSet();
+        LongOpenHashSet writeChunks = new LongOpenHashSet();
+        for (SitePos site : this.removedSites) {
+            LongOpenHashSet chunks = this.siteChunks.get(site);
+            if (chunks == null) continue;
+
+            for (LongIterator iterator = chunks.iterator(); iterator.hasNext(); ) {
+                long chunkPosL = iterator.nextLong();
+                writeChunks.add(chunkPosL);
+                int chunkX = ChunkPos.getPackedX(chunkPosL);
+                int chunkZ = ChunkPos.getPackedZ(chunkPosL);
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        fillChunks.add(ChunkPos.toLong(chunkX + dx, chunkZ + dz));
+                    }
+                }
+            }
+        }
+        this.removedSites.clear();
+        if (writeChunks.isEmpty()) return;
+
+        reassign(fillChunks, writeChunks);
+    }
+
+    private void reassign(LongSet fillChunks, LongSet writeChunks) {
+        SiteFloodFill floodFill = new SiteFloodFill(this.siteIndex);
+        for (LongIterator iterator = fillChunks.iterator(); iterator.hasNext(); ) {
+            ScannedChunk chunk = this.scannedChunks.get(iterator.nextLong());
+            if (chunk == null) continue;
+            floodFill.addChunk(chunk);
+            floodFill.addSites(this.getChunkSites(chunk.chunkPos));
+        }
+        Long2ObjectOpenHashMap<WaterSiteChunk> results = floodFill.fill();
+
+        for (LongIterator iterator = writeChunks.iterator(); iterator.hasNext(); ) {
+            long chunkPosL = iterator.nextLong();
+            WaterSiteChunk oldChunk = this.waterCache.get(chunkPosL);
+            WaterSiteChunk newChunk = this.scannedChunks.containsKey(chunkPosL) ? results.get(chunkPosL) : null;
+            if (oldChunk == null && newChunk == null) continue;
+            this.replanChunks.add(chunkPosL);
+
+            for (int i = 0; i < 256; i++) {
+                SitePos oldSite = oldChunk == null ? null : oldChunk.getSite(i);
+                SitePos newSite = newChunk == null ? null : newChunk.getSite(i);
+                long oldPos = oldSite == null ? 0 : oldChunk.scan.getPos(i);
+                long newPos = newSite == null ? 0 : newChunk.scan.getPos(i);
+                if (oldSite == newSite && oldPos == newPos) continue;
+
+                if (oldSite != null && oldSite.removePos(oldPos)) this.dirtySites.add(oldSite);
+                if (newSite != null && newSite.addPos(newPos)) this.dirtySites.add(newSite);
+            }
+
+            this.setWaterChunk(chunkPosL, newChunk);
+        }
+    }
+
+    /**
+     * Clears everything - used for rebuilding via f3+a
+     */
+    public void clear() {
+        this.scannedChunks.clear();
+        this.eastSeams.clear();
+        this.southSeams.clear();
+        this.waterCache.clear();
+        this.siteChunks.clear();
+        this.removedSites.clear();
+        this.siteIndex.clear();
+        this.dirtyChunks.clear();
+        this.dirtySites.clear();
+        this.spawnPlans.clear();
+        this.replanChunks.clear();
+        this.phasePlans.clear();
+        this.dirtyPhases.clear();
+        this.plansByPhase = new SpawnPlan[0][];
+        this.built = false;
+    }
+}
@@ -0,0 +1,167 @@
+package net.superkat.tidal.scan;
+
+import it.unimi.dsi.fastutil.ints.IntObjectPair;
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import net.minecraft.util.math.ChunkPos;
+import net.superkat.tidal.config.TidalConfig;
+
+import java.util.Collection;
+
+/**
+ * Assigns every scanned water column its closest {@link SitePos} by spreading outwards from all sites at once(a multi-source distance transform), instead of checking every water column on its own.
+ * <br><br>
+ * Each site seeds its own column. Columns then hand their site to their 8 neighbouring columns, which keep whichever site is actually closest to them(straight-line distance).
+ * Sites spread across every column of the added chunks, land included, so a site across a thin strip of land still wins over a further site reachable through water - the water mask only decides which columns get results.
+ * A column is only revisited when a closer site reaches it, so a fill scales with the area of the added chunks instead of area * sites.
+ * <br><br>
+ * Like any propagated distance transform, a column right on the border between two sites can rarely end up with the one a fraction of a block further away.
+ * Water which no site reaches(e.g. across unscanned chunks) falls back to the {@link SiteIndex}.
+ * <br><br>
+ * With {@link TidalConfig#openOceanTiles} on, sites stop spreading past {@link TidalConfig#openOceanDistance}, and 4x4 tiles of water with no site that close are marked as open ocean,
+ * with one bounded site search per tile instead of one per column.
+ *
+ * @see ShoreIndexBuilder#reassignSites
+ */
+public class SiteFloodFill {
+    // the columns of each 4x4 tile(see WaterSiteChunk#tileIndex)
+    private static final long[][] TILES = new long[16][];
+
+    static {
+        for (int tile = 0; tile < 16; tile++) {
+            TILES[tile] = ColumnMask.create();
+        }
+        for (int i = 0; i < 256; i++) {
+            ColumnMask.set(TILES[WaterSiteChunk.tileIndex(i)], i);
+        }
+    }
+
+    public final SiteIndex siteIndex;
+
+    // all added scanned chunks, keyed by ChunkPos(as a long) - sites spread across all of their columns
+    private final Long2ObjectOpenHashMap<ScannedChunk> chunks = new Long2ObjectOpenHashMap<>();
+
+    // columns(x/z packed as a long) -> their closest site so far & squared distance from it
+    private final Long2ObjectOpenHashMap<SitePos> closestSites = new Long2ObjectOpenHashMap<>();
+    private final Long2DoubleOpenHashMap closestDists = new Long2DoubleOpenHashMap();
+    private final LongArrayFIFOQueue queue = new LongArrayFIFOQueue();
+
+    // how far sites can spread - anything further is open ocean
+    private final boolean openOcean;
+    private final double maxDist;
+
+    public SiteFloodFill(SiteIndex siteIndex) {
+        this.siteIndex = siteIndex;
+        this.closestDists.defaultReturnValue(Double.MAX_VALUE);
+        this.openOcean = TidalConfig.openOceanTiles;
+        this.maxDist = this.openOcean ? (double) TidalConfig.openOceanDistance * TidalConfig.openOceanDistance : Double.MAX_VALUE;
+    }
+
+    public void addChunk(ScannedChunk chunk) {
+        this.chunks.put(chunk.chunkPos, chunk);
+    }
+
+    public void addSites(Collection<SitePos> sites) {
+        for (SitePos site : sites) {
+            if (!isAdded(site.getX(), site.getZ())) continue;
+            offer(ChunkPos.toLong(site.getX(), site.getZ()), site.getX(), site.getZ(), site);
+        }
+    }
+
+    private boolean isAdded(int x, int z) {
+        return this.chunks.containsKey(ChunkPos.toLong(x >> 4, z >> 4));
+    }
+
+    /**
+     * Spreads all added sites across all added chunks, then stores the results of their water columns per chunk.
+     *
+     * @return Each chunk's water columns & their closest site/distance, keyed by ChunkPos(as a long)
+     */
+    public Long2ObjectOpenHashMap<WaterSiteChunk> fill() {
+        while (!this.queue.isEmpty()) {
+            long column = this.queue.dequeueLong();
+            SitePos site = this.closestSites.get(column);
+            int x = ChunkPos.getPackedX(column);
+            int z = ChunkPos.getPackedZ(column);
+
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    if (dx == 0 && dz == 0) continue;
+                    if (!isAdded(x + dx, z + dz)) continue;
+                    offer(ChunkPos.toLong(x + dx, z + dz), x + dx, z + dz, site);
+                }
+            }
+        }
+
+        Long2ObjectOpenHashMap<WaterSiteChunk> results = new Long2ObjectOpenHashMap<>();
+        long[] tileMask = ColumnMask.create();
+        for (ScannedChunk chunk : this.chunks.values()) {
+            if (!chunk.hasWater()) continue;
+            WaterSiteChunk siteChunk = new WaterSiteChunk(chunk);
+
+            for (int tile = 0; tile < 16; tile++) {
+                int tileX = (tile & 3) << 2;
+                int tileZ = (tile >> 2) << 2;
+                ColumnMask.and(TILES[tile], chunk.waterMask, tileMask);
+                if (ColumnMask.isEmpty(tileMask)) continue;
+
+                if (this.openOcean && isOpenOcean(chunk, tileMask, chunk.startX + tileX, chunk.startZ + tileZ)) {
+                    siteChunk.setOpenOcean(tile);
+                    continue;
+                }
+
+                for (int i = ColumnMask.nextSetBit(tileMask, 0); i >= 0; i = ColumnMask.nextSetBit(tileMask, i + 1)) {
+                    int x = chunk.startX + ColumnMask.getX(i);
+                    int z = chunk.startZ + ColumnMask.getZ(i);
+                    long column = ChunkPos.toLong(x, z);
+                    SitePos site = this.closestSites.get(column);
+                    int dist;
+
+                    if (site != null) {
+                        dist = (int) Math.sqrt(this.closestDists.get(column));
+                    } else {
+                        // not reached by any site(or too far from all of them)
+                        IntObjectPair<SitePos> closest = this.siteIndex.findClosest(x, z, TidalConfig.siteSearchChunkRadius);
+                        if (closest == null) continue;
+                        site = closest.second();
+                        dist = closest.firstInt();
+                    }
+
+                    siteChunk.set(i, site, dist);
+                }
+            }
+
+            if (!siteChunk.isEmpty()) results.put(chunk.chunkPos, siteChunk);
+        }
+
+        return results;
+    }
+
+    /**
+     * A tile is open ocean if none of its water was reached by a site, and no site at all is within the open ocean distance of it.
+     *
+     * @param tileMask The tile's water columns
+     * @param startX The tile's north-west corner
+     * @param startZ The tile's north-west corner
+     */
+    private boolean isOpenOcean(ScannedChunk chunk, long[] tileMask, int startX, int startZ) {
+        for (int i = ColumnMask.nextSetBit(tileMask, 0); i >= 0; i = ColumnMask.nextSetBit(tileMask, i + 1)) {
+            if (this.closestSites.containsKey(ChunkPos.toLong(chunk.startX + ColumnMask.getX(i), chunk.startZ + ColumnMask.getZ(i)))) return false;
+        }
+
+        // checked from the tile's center, so the distance has to cover the tile's corners too
+        return this.siteIndex.findClosest(startX + 2, startZ + 2, TidalConfig.siteSearchChunkRadius, TidalConfig.openOceanDistance + 3) == null;
+    }
+
+    private void offer(long column, int x, int z, SitePos site) {
+        double dx = x + 0.5 - site.getX();
+        double dz = z + 0.5 - site.getZ();
+        double dist = dx * dx + dz * dz;
+        if (dist > this.maxDist || dist >= this.closestDists.get(column)) return;
+
+        this.closestSites.put(column, site);
+        this.closestDists.put(column, dist);
+        this.queue.enqueue(column);
+    }
+}
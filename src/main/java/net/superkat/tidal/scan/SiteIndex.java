@@ -0,0 +1,141 @@
+package net.superkat.tidal.scan;
+
+import it.unimi.dsi.fastutil.ints.IntObjectPair;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Uniform grid of {@link SitePos}', bucketed by chunk. Used to find the closest SitePos of a water block without checking every known site.
+ * <br><br>
+ * Sites are always stored in the bucket of the chunk they are in, which is also the chunk they were scanned in, so the buckets can be added/removed alongside the chunk's scan.
+ * <br><br>
+ * The closest site search checks rings of chunks around the given position, starting with its own chunk, and stops once no site in the next ring could possibly be closer than the closest one found so far.
+ *
+ * @see ShoreIndex#getSiteForPos(long)
+ */
+public class SiteIndex {
+    // Sites split by the chunk they are in
+    public final ChunkMap<List<SitePos>> buckets;
+
+    public SiteIndex() {
+        this(new ChunkMap<>());
+    }
+
+    private SiteIndex(ChunkMap<List<SitePos>> buckets) {
+        this.buckets = buckets;
+    }
+
+    /**
+     * Replaces a chunk's bucket with the given sites.
+     *
+     * @param chunkPosL The ChunkPos(as a long) of the sites
+     * @param sites The sites in that chunk
+     */
+    public void putChunk(long chunkPosL, Collection<SitePos> sites) {
+        if (sites == null || sites.isEmpty()) {
+            this.buckets.remove(chunkPosL);
+            return;
+        }
+        this.buckets.put(chunkPosL, new ObjectArrayList<>(sites));
+    }
+
+    public void add(SitePos site) {
+        long chunkPosL = ChunkPos.toLong(site.getX() >> 4, site.getZ() >> 4);
+        // buckets are replaced instead of changed, as copies share them
+        List<SitePos> bucket = new ObjectArrayList<>(this.buckets.getOrDefault(chunkPosL, List.of()));
+        bucket.add(site);
+        this.buckets.put(chunkPosL, bucket);
+    }
+
+    public void removeChunk(long chunkPosL) {
+        this.buckets.remove(chunkPosL);
+    }
+
+    /**
+     * @return A copy of this index, which isn't affected by later changes to this one. The buckets themselves are shared, as they're only ever replaced, never changed,
+     * and so are the regions of buckets which haven't changed since the last copy(see {@link ChunkMap#snapshot()}).
+     */
+    public SiteIndex copy() {
+        return new SiteIndex(this.buckets.snapshot());
+    }
+
+    public void clear() {
+        this.buckets.clear();
+    }
+
+    public boolean isEmpty() {
+        return this.buckets.isEmpty();
+    }
+
+    /**
+     * Finds the closest site to a block position within a chunk radius.
+     *
+     * @param pos The BlockPos to find the closest site of
+     * @param maxChunkRadius The max amount of chunks away from the BlockPos' chunk to look for sites in
+     * @return The distance(rounded down) & closest site, or null if no site is within the radius.
+     */
+    @Nullable
+    public IntObjectPair<SitePos> findClosest(BlockPos pos, int maxChunkRadius) {
+        return findClosest(pos.getX(), pos.getZ(), maxChunkRadius);
+    }
+
+    @Nullable
+    public IntObjectPair<SitePos> findClosest(int x, int z, int maxChunkRadius) {
+        return findClosest(x, z, maxChunkRadius, Double.MAX_VALUE);
+    }
+
+    /**
+     * Finds the closest site to a block position, giving up early if no site is within a max distance - only the chunks which could have a close enough site are checked.
+     *
+     * @param maxChunkRadius The max amount of chunks away from the position's chunk to look for sites in
+     * @param maxDistance The max distance(in blocks) the site can be away from the position
+     * @return The distance(rounded down) & closest site, or null if no site is close enough.
+     */
+    @Nullable
+    public IntObjectPair<SitePos> findClosest(int x, int z, int maxChunkRadius, double maxDistance) {
+        if (this.buckets.isEmpty()) return null;
+        if (maxDistance < Double.MAX_VALUE) maxChunkRadius = Math.min(maxChunkRadius, (int) Math.ceil(maxDistance / 16) + 1);
+
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        double distance = 0;
+        SitePos closest = null;
+
+        for (int radius = 0; radius <= maxChunkRadius; radius++) {
+            // any site in this ring is at least (radius - 1) full chunks away
+            if (closest != null) {
+                double ringDist = Math.max(0, radius - 1) * 16;
+                if (ringDist * ringDist > distance) break;
+            }
+
+            for (int dx = -radius; dx <= radius; dx++) {
+                // only the edges of the ring - the inside was already checked
+                boolean edgeX = dx == -radius || dx == radius;
+                for (int dz = -radius; dz <= radius; dz += edgeX ? 1 : radius * 2) {
+                    List<SitePos> bucket = this.buckets.get(ChunkPos.toLong(chunkX + dx, chunkZ + dz));
+                    if (bucket != null) {
+                        for (SitePos site : bucket) {
+                            double siteDx = x + 0.5 - site.getX();
+                            double siteDz = z + 0.5 - site.getZ();
+                            double checkDist = siteDx * siteDx + siteDz * siteDz;
+
+                            if (closest == null || checkDist < distance) {
+                                closest = site;
+                                distance = checkDist;
+                            }
+                        }
+                    }
+                    if (radius == 0) break;
+                }
+            }
+        }
+
+        if (closest == null || distance > maxDistance * maxDistance) return null;
+        return IntObjectPair.of((int) Math.sqrt(distance), closest);
+    }
+}
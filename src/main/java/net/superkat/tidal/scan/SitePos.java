@@ -1,65 +1,111 @@
 package net.superkat.tidal.scan;
 
-import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.minecraft.util.math.BlockPos;
+import org.jetbrains.annotations.Nullable;
 
 /**
- * Holds a BlockPos as the main position, along with a list of all x/z coordinates of BlockPos' which were calculated to have this SitePos as the closest.<br>
+ * Holds a BlockPos as the main position, along with the running sums of the x/z coordinates of all BlockPos' which were calculated to have this SitePos as the closest.<br>
  * The yaw is the direction from the center of all those blocks towards the SitePos' main position.
+ * <br><br>
+ * Only the sums & count are kept, so adding/removing a position is O(1), and a site takes the same memory no matter how much water it covers.
+ * Changed sites are marked dirty, and only have their center & yaw recalculated once per build(see {@link ShoreIndexBuilder#build()}).
+ * <br><br>
+ * The positions are only changed by the {@link ShoreIndexBuilder}, off-thread. The main thread only reads the site's {@link Shape}, which is swapped in whole once the center is recalculated.
  */
 public class SitePos {
     public BlockPos pos;
-    public int centerX = 0;
-    public int centerZ = 0;
-    public float yaw = 0f;
-    public boolean yawCalculated = false;
 
-    // cache x's and z's - stored as ints for speed
-    public IntArrayList xList = new IntArrayList();
-    public IntArrayList zList = new IntArrayList();
+    // center, yaw & size as of the last updateCenter - null until then
+    @Nullable
+    private volatile Shape shape = null;
+
+    // sums of the x's and z's of all blocks with this site as their closest, and the amount of those blocks
+    public long sumX = 0;
+    public long sumZ = 0;
+    public int count = 0;
+
+    // if positions were added/removed since the last updateCenter
+    public boolean dirty = false;
 
     public SitePos(BlockPos pos) {
         this.pos = pos;
     }
 
-    public void addPos(BlockPos pos) {
-        this.xList.add(pos.getX());
-        this.zList.add(pos.getZ());
+    /**
+     * @param pos BlockPos(as a long) which has this site as its closest
+     * @return True if this site just became dirty, false if it already was
+     */
+    public boolean addPos(long pos) {
+        this.sumX += BlockPos.unpackLongX(pos);
+        this.sumZ += BlockPos.unpackLongZ(pos);
+        this.count++;
+        return markDirty();
     }
 
-    public void removePos(BlockPos pos) {
-        int xIndex = this.xList.indexOf(pos.getX());
-        this.xList.removeInt(xIndex);
+    /**
+     * @param pos BlockPos(as a long) which no longer has this site as its closest - must have been added before!
+     * @return True if this site just became dirty, false if it already was
+     */
+    public boolean removePos(long pos) {
+        this.sumX -= BlockPos.unpackLongX(pos);
+        this.sumZ -= BlockPos.unpackLongZ(pos);
+        this.count--;
+        return markDirty();
+    }
 
-        int zIndex = this.zList.indexOf(pos.getZ());
-        this.zList.removeInt(zIndex);
+    private boolean markDirty() {
+        if (this.dirty) return false;
+        this.dirty = true;
+        return true;
     }
 
     public void clearPositions() {
-        this.xList.clear();
-        this.zList.clear();
-        this.yawCalculated = false;
+        this.sumX = 0;
+        this.sumZ = 0;
+        this.count = 0;
+        this.dirty = false;
+        this.shape = null;
     }
 
     public void updateCenter() {
-        if(xList.isEmpty() || zList.isEmpty()) return;
-        int xSize = this.xList.size();
-        this.centerX = this.xList.intStream().sum() / xSize;
+        this.dirty = false;
+        if(this.count <= 0) {
+            // keep the last yaw, but nothing is around it anymore
+            Shape oldShape = this.shape;
+            if (oldShape != null) this.shape = new Shape(oldShape.centerX(), oldShape.centerZ(), oldShape.yaw(), 0);
+            return;
+        }
+        int centerX = (int) (this.sumX / this.count);
+        int centerZ = (int) (this.sumZ / this.count);
+
+        this.shape = new Shape(centerX, centerZ, calcYaw(centerX, centerZ), this.count);
+    }
 
-        int zSize = this.zList.size();
-        this.centerZ = this.zList.intStream().sum() / zSize;
+    private float calcYaw(int centerX, int centerZ) {
+        float yaw = (float) Math.toDegrees(Math.atan2(pos.getZ() - centerZ, pos.getX() - centerX));
+        return Math.round(yaw / 15f) * 15f;
+    }
 
-        updateYaw();
+    @Nullable
+    public Shape getShape() {
+        return this.shape;
     }
 
-    public void updateYaw() {
-        this.yawCalculated = true;
-        this.yaw = (float) Math.toDegrees(Math.atan2(pos.getZ() - centerZ, pos.getX() - centerX));
-        this.yaw = Math.round(this.yaw / 15f) * 15f;
+    public boolean isYawCalculated() {
+        return this.shape != null;
     }
 
     public float getYaw() {
-        return this.yaw;
+        Shape shape = this.shape;
+        return shape == null ? 0f : shape.yaw();
+    }
+
+    /**
+     * @return The amount of water blocks which have this site as their closest
+     */
+    public int getSize() {
+        Shape shape = this.shape;
+        return shape == null ? 0 : shape.size();
     }
 
     /**
@@ -87,4 +133,15 @@ public class SitePos {
     public int getZ() {
         return this.pos.getZ();
     }
+
+    /**
+     * Everything the main thread reads from a site, calculated together.
+     *
+     * @param centerX The average x of all water blocks with this site as their closest
+     * @param centerZ The average z of all water blocks with this site as their closest
+     * @param yaw The direction from the center towards the site, rounded to 15 degrees
+     * @param size The amount of water blocks with this site as their closest
+     */
+    public record Shape(int centerX, int centerZ, float yaw, int size) {
+    }
 }
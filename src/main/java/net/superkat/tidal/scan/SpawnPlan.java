@@ -0,0 +1,120 @@
+package net.superkat.tidal.scan;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
+import net.superkat.tidal.config.TidalConfig;
+
+import java.util.List;
+
+/**
+ * Where a wave spawns, which way it goes, and how big it is - one per group of connected water columns at {@link TidalConfig#waveDistFromShore} from their site.
+ * <br><br>
+ * Plans are made per chunk by the {@link ShoreIndexBuilder} whenever the chunk's water or one of its sites changes, so spawning waves only needs to go through the plans instead of regrouping all the water every time.
+ * Anything which needs the world(e.g. biome, if the water is still) is checked when the wave is actually spawned.
+ * <br><br>
+ * Each plan spawns once every {@link TidalConfig#waveTicks} ticks, on the tick of its phase. The phase comes from its site's position, so all of a site's waves still come in together,
+ * but different sites are spread out over the cycle instead of everything spawning on the same tick(see {@link net.superkat.tidal.wave.TidalWaveHandler#spawnScheduledWaves(long)}).
+ *
+ * @param spawnPos The BlockPos(as a long) to spawn the wave at - one block above the water
+ * @param yaw The yaw of the site the group started at
+ * @param width How many blocks wide the wave is(1-3)
+ * @param bigWave If the site is big enough for a big wave
+ * @param phase Which tick of the wave cycle to spawn on(0 to {@link TidalConfig#waveTicks} - 1)
+ */
+public record SpawnPlan(long spawnPos, float yaw, int width, boolean bigWave, int phase) {
+    public static final SpawnPlan[] NONE = new SpawnPlan[0];
+
+    public static final int MIN_SITE_SIZE = 50;
+    public static final int BIG_WAVE_SITE_SIZE = 100;
+    // max columns connected into one wave
+    public static final int MAX_LENGTH = 3;
+    // max yaw difference of connected columns' sites
+    public static final float MAX_YAW_DIFF = 15f;
+
+    /**
+     * Groups a chunk's water columns at a distance from their site with their neighbours of a similar yaw, and makes a plan for each group.<br>
+     * Groups never cross chunk edges, which only matters for the few groups right on an edge.
+     *
+     * @param siteChunk The chunk's water & closest sites
+     * @param distance The distance from the site to spawn waves at
+     * @return The chunk's plans, or {@link SpawnPlan#NONE}
+     */
+    public static SpawnPlan[] plan(WaterSiteChunk siteChunk, int distance) {
+        if (siteChunk.siteIds == null) return NONE;
+
+        long[] waters = ColumnMask.create();
+        for (int i = 0; i < 256; i++) {
+            if (siteChunk.siteIds[i] != 0 && siteChunk.getDist(i) == distance && siteChunk.scan.isSample(i)) ColumnMask.set(waters, i);
+        }
+        if (ColumnMask.isEmpty(waters)) return NONE;
+
+        List<SpawnPlan> plans = new ObjectArrayList<>();
+        long[] visited = ColumnMask.create();
+        for (int i = 0; i < 256; i++) {
+            if (!ColumnMask.get(waters, i) || ColumnMask.get(visited, i)) continue;
+            SitePos site = siteChunk.getSite(i);
+            if (!canSpawn(site)) continue;
+
+            float yaw = site.getYaw();
+            IntArrayList connected = findConnected(siteChunk, i, yaw, waters, visited);
+            for (int j = 0; j < connected.size(); j++) {
+                ColumnMask.set(visited, connected.getInt(j));
+            }
+
+            int[] sortedConnected = connected.toIntArray();
+            IntArrays.quickSort(sortedConnected, (index1, index2) -> Integer.compare(ColumnMask.getZ(index1), ColumnMask.getZ(index2)));
+            long spawnPos = BlockPos.add(siteChunk.scan.getPos(sortedConnected[sortedConnected.length / 2]), 0, 1, 0);
+
+            int width = (int) MathHelper.clamp(connected.size() * 1.5, 1, 3);
+            plans.add(new SpawnPlan(spawnPos, yaw, width, site.getSize() >= BIG_WAVE_SITE_SIZE, getPhase(site)));
+        }
+        return plans.toArray(NONE);
+    }
+
+    private static IntArrayList findConnected(WaterSiteChunk siteChunk, int start, float yaw, long[] waters, long[] ignore) {
+        IntArrayList connected = new IntArrayList();
+        IntArrayFIFOQueue stack = new IntArrayFIFOQueue();
+        stack.enqueue(start);
+
+        for (int i = 0; i < MAX_LENGTH; i++) {
+            int index = stack.dequeueInt();
+            if (!connected.contains(index)) connected.add(index);
+            int x = ColumnMask.getX(index);
+            int z = ColumnMask.getZ(index);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    if (dx == 0 && dz == 0) continue;
+                    int checkX = x + dx;
+                    int checkZ = z + dz;
+                    if (checkX < 0 || checkX > 15 || checkZ < 0 || checkZ > 15) continue;
+                    int check = ColumnMask.index(checkX, checkZ);
+                    if (ColumnMask.get(ignore, check) || !ColumnMask.get(waters, check)) continue;
+
+                    SitePos site = siteChunk.getSite(check);
+                    if (!canSpawn(site)) continue;
+                    if (Math.abs(site.getYaw() - yaw) > MAX_YAW_DIFF) continue;
+                    stack.enqueue(check);
+                }
+            }
+
+            if (stack.isEmpty()) break;
+        }
+        return connected;
+    }
+
+    /**
+     * @return The site's phase in the wave cycle - the same on every client, and for every rebuild
+     */
+    public static int getPhase(SitePos site) {
+        return Math.floorMod(HashCommon.mix(site.getPos().asLong()), TidalConfig.waveTicks);
+    }
+
+    private static boolean canSpawn(SitePos site) {
+        return site != null && site.isYawCalculated() && site.getSize() >= MIN_SITE_SIZE;
+    }
+}
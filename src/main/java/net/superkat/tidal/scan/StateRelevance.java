@@ -0,0 +1,45 @@
+package net.superkat.tidal.scan;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.superkat.tidal.wave.TidalWaveHandler;
+
+/**
+ * Precomputed table of which BlockStates can change a scanned column, keyed by the state's raw id - used to throw out irrelevant block updates(crops growing, redstone dust, torches, etc.) before they're tracked.
+ * <br><br>
+ * A block update only has the new state, so air counts too, as it could be a solid block being broken.
+ * Other non-solid blocks only matter if they replace a water or solid top block(e.g. a torch placed where water was), which the new state alone can't tell -
+ * so they're not relevant here, and {@link WaterHandler#onBlockUpdate(BlockPos, BlockState)} checks what the column was in the last scan instead.
+ */
+public final class StateRelevance {
+    private static boolean[] table = null;
+
+    private StateRelevance() {
+    }
+
+    /**
+     * @return If a block update to this state could change a column's water/land surface, no matter what was there before
+     */
+    public static boolean isRelevant(BlockState state) {
+        boolean[] relevant = table;
+        if (relevant == null) relevant = table = buildTable(); // built on first use, once all blocks are registered
+
+        int id = Block.getRawIdFromState(state);
+        if (id < 0 || id >= relevant.length) return calcRelevant(state);
+        return relevant[id];
+    }
+
+    private static boolean[] buildTable() {
+        boolean[] relevant = new boolean[Block.STATE_IDS.size()];
+        for (BlockState state : Block.STATE_IDS) {
+            int id = Block.getRawIdFromState(state);
+            if (id >= 0 && id < relevant.length) relevant[id] = calcRelevant(state);
+        }
+        return relevant;
+    }
+
+    private static boolean calcRelevant(BlockState state) {
+        return state.isAir() || TidalWaveHandler.stateIsWater(state) || state.isSolid();
+    }
+}
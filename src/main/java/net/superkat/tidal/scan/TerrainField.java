@@ -0,0 +1,90 @@
+package net.superkat.tidal.scan;
+
+import net.minecraft.util.math.ChunkPos;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Read-only field of every scanned column's surface height, water/solid bits, and drop-offs(see {@link ScannedChunk#dropOffMask}) - used by waves for collisions & checking what's beneath them, instead of the world.
+ * <br><br>
+ * Built along with each {@link ShoreIndex} from a snapshot of the scanned chunks(see {@link ChunkMap#snapshot()}), so it never changes after being built, and can be read from any thread.
+ * Columns in unscanned chunks, or without a top block, are unknown.
+ */
+public class TerrainField {
+    public static final TerrainField EMPTY = new TerrainField(new ChunkMap<ScannedChunk>().snapshot());
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private final ChunkMap<ScannedChunk> chunks;
+
+    /**
+     * @param chunks A snapshot of the scanned chunks - it isn't copied
+     */
+    public TerrainField(ChunkMap<ScannedChunk> chunks) {
+        this.chunks = chunks.snapshot();
+    }
+
+    @Nullable
+    private ScannedChunk getChunk(int x, int z) {
+        return this.chunks.get(ChunkPos.toLong(x >> 4, z >> 4));
+    }
+
+    /**
+     * @return The y of the column's top block, or {@link TerrainField#UNKNOWN}
+     */
+    public int getSurfaceY(int x, int z) {
+        ScannedChunk chunk = getChunk(x, z);
+        if (chunk == null) return UNKNOWN;
+        int index = ColumnMask.index(x & 15, z & 15);
+        if (!chunk.isWater(index) && !chunk.isLand(index)) return UNKNOWN;
+        return chunk.heights[index];
+    }
+
+    /**
+     * The lowest y a wave's box can be at in this column - the top of solid blocks, or the bottom of the surface water block, so falling waves splash into water instead of sinking.<br>
+     * Non-solid top blocks(e.g. flowers) are assumed to be on top of a solid block.
+     *
+     * @return The column's collision height, or {@link TerrainField#UNKNOWN} if nothing should be collided with
+     */
+    public int getCollisionY(int x, int z) {
+        ScannedChunk chunk = getChunk(x, z);
+        if (chunk == null) return UNKNOWN;
+        int index = ColumnMask.index(x & 15, z & 15);
+        if (chunk.isWater(index)) return chunk.heights[index];
+        if (!chunk.isLand(index)) return UNKNOWN;
+        return chunk.isSolid(index) ? chunk.heights[index] + 1 : chunk.heights[index];
+    }
+
+    public boolean isWater(int x, int z) {
+        ScannedChunk chunk = getChunk(x, z);
+        return chunk != null && chunk.isWater(ColumnMask.index(x & 15, z & 15));
+    }
+
+    public boolean isSolid(int x, int z) {
+        ScannedChunk chunk = getChunk(x, z);
+        return chunk != null && chunk.isSolid(ColumnMask.index(x & 15, z & 15));
+    }
+
+    /**
+     * A water column with a neighbour at least 2 blocks lower - the top of a waterfall.<br>
+     * Neighbours within the same chunk are cached by the chunk's scan(see {@link ScannedChunk#dropOffMask}), while columns on a chunk edge also check the neighbouring chunk's edge column, as long as it's scanned.
+     */
+    public boolean isDropOff(int x, int z) {
+        ScannedChunk chunk = getChunk(x, z);
+        if (chunk == null) return false;
+        int index = ColumnMask.index(x & 15, z & 15);
+        if (chunk.isDropOff(index)) return true;
+        if (!chunk.isWater(index)) return false;
+
+        int localX = x & 15;
+        int localZ = z & 15;
+        int dropY = chunk.heights[index] - 2;
+        return (localX == 0 && isDropTo(x - 1, z, dropY))
+                || (localX == 15 && isDropTo(x + 1, z, dropY))
+                || (localZ == 0 && isDropTo(x, z - 1, dropY))
+                || (localZ == 15 && isDropTo(x, z + 1, dropY));
+    }
+
+    private boolean isDropTo(int x, int z, int dropY) {
+        int surfaceY = getSurfaceY(x, z);
+        return surfaceY != UNKNOWN && surfaceY <= dropY;
+    }
+}
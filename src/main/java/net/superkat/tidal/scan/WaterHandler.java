@@ -1,14 +1,18 @@
 package net.superkat.tidal.scan;
 
-import com.google.common.collect.Maps;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Queues;
 import com.google.common.collect.Sets;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.ints.IntObjectPair;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
@@ -19,6 +23,7 @@ import net.minecraft.util.Util;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.Heightmap;
 import net.minecraft.world.chunk.Chunk;
 import net.superkat.tidal.DebugHelper;
 import net.superkat.tidal.Tidal;
@@ -26,19 +31,17 @@ import net.superkat.tidal.config.TidalConfig;
 import net.superkat.tidal.particles.debug.DebugShoreParticle;
 import net.superkat.tidal.particles.debug.DebugWaterParticle;
 import net.superkat.tidal.wave.TidalWaveHandler;
-import org.apache.commons.compress.utils.Lists;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Vector3f;
 
-import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Handles water/shoreline blocks & SitePos'
@@ -49,64 +52,98 @@ import java.util.stream.Collectors;
  * <p>
  * {@link WaterHandler#checkUnscannedChunks()} adds unscanned chunks within scanning distance to {@link WaterHandler#unscannedChunkQueue}.<br>
  * In {@link WaterHandler#tick()}, that unscannedChunkQueue is iterated though via {@link WaterHandler#scheduleChunkScans()}, where a {@link ChunkScanner} is created, and returns a {@link ScannedChunk} with that chunk's water blocks, shoreline blocks, and created {@link SitePos} sites.<br><br>
- * Currently, nothing is done to the ChunkScanner if the chunk is unloaded during its scan process, as the CompletableFuture does not get cancelled. That could be an improvement.<br><br>
- * Once all queued ChunkScanners are finished, the scanner provides the info to here, the WaterHandler.<br><br>
- * Then, all known water blocks have their closest SitePos calculated via {@link  WaterHandler#scheduleWaterCache()}, and once that is done, the values for {@link WaterHandler#waterCache} & {@link WaterHandler#waterDistCache} are set.<br><br>
+ * The scans run on the {@link ScanExecutor}, closest chunks first. If a chunk is unloaded or rescanned during its scan process, its scan is cancelled, and any stale results are dropped.<br>
+ * With {@link TidalConfig#scanMode} set to BUDGETED or HYBRID, scans are instead queued in {@link WaterHandler#budgetedScans}, and run on the main thread for at most {@link TidalConfig#scanBudgetMs} per tick(see {@link WaterHandler#runBudgetedScans()}).<br>
+ * Chunks further away than {@link TidalConfig#lodInnerRadius} are scanned at a lower level of detail(see {@link WaterHandler#getScanStride(ChunkPos, ChunkPos)}), and are rescanned at full detail once the camera gets close enough.<br><br>
+ * Each finished scan is put in {@link WaterHandler#completedScans}, which is drained every tick via {@link WaterHandler#ingestScans()}. There's no waiting for other scans to finish - the chunk is queued as an update for the {@link ShoreIndexBuilder},
+ * which stitches it to its neighbours and reassigns the closest sites of the water in & around it(see {@link SiteFloodFill}). The chunk can spawn waves as soon as the next {@link ShoreIndex} is built.<br><br>
+ * <p>
+ * All scanned water & sites live in the ShoreIndexBuilder, which is only ever used off-thread, one build at a time(see {@link WaterHandler#scheduleBuild()}). Each build produces an immutable {@link ShoreIndex},
+ * which is swapped into {@link WaterHandler#index} at the start of the next tick. Everything else only reads from that index, so it never sees a half built state.<br><br>
  * <p>
  * Chunk unloaded -> {@link WaterHandler#unloadChunk(Chunk)}. Because nearly everything is split per chunk via Maps, all keys with that ChunkPos(as a long) are removed, removing the values with it.<br><br>
  * <p>
- * Join world -> Nearby chunks are added via loadChunk(), then once all nearby chunks are loaded via {@link TidalWaveHandler#nearbyChunksLoaded(ClientPlayerEntity)}, the scheduleChunkScans method is called.<br><br>
+ * Join world -> Nearby chunks are added via loadChunk(), and get scanned as soon as they're loaded, closest first.<br><br>
  * <p>
- * Block updated -> {@link WaterHandler#onBlockUpdate(BlockPos, BlockState)}. A count of all block updates per chunk is kept track of in {@link WaterHandler#chunkUpdates}.<br>After enough block updates in a chunk(configurable), that chunk will be rescanned via {@link WaterHandler#rescanChunkPos(ChunkPos)}.
+ * Block updated -> {@link WaterHandler#onBlockUpdate(BlockPos, BlockState)}. Updates which can't change the surface are thrown out right away(see {@link StateRelevance}).
+ * The updated column is added to {@link WaterHandler#dirtyColumns}, and every few ticks({@link TidalConfig#blockUpdateInterval}), only those columns are re-sampled & patched into their chunk's scan as one batch via {@link WaterHandler#processBlockUpdates()}.<br>
+ * A count of all block updates per chunk in a batch is kept track of in {@link WaterHandler#chunkUpdates}. After enough block updates in a chunk in one batch(configurable, e.g. an explosion), that chunk will be rescanned with the batch instead.
  *
  * @see TidalWaveHandler
  * @see ChunkScanner
  * @see SitePos
  */
 public class WaterHandler {
+    // How long f3+a keeps showing the old index while waiting for the new one to finish, at most
+    public static final int MAX_REBUILD_HOLD_TICKS = 200;
+    // How many ticks a budgeted build can be put off for lack of budget before it's finished anyway
+    public static final int MAX_DEFERRED_BUILD_TICKS = 20;
+
     public final TidalWaveHandler tidalWaveHandler;
     public final ClientWorld world;
     // using fastutils because... it has fast in its name? I've been told its fast! And I gotta go fast!
 
-    // Keep track of how many block updates have happened in a chunk - used to rescan chunks after enough(configurable) updates
-    public Map<Long, Integer> chunkUpdates = new Long2IntOpenHashMap(81, 0.25f);
+    // Keep track of how many block updates have happened in a chunk this batch - used to rescan chunks after enough(configurable) updates, instead of patching them
+    public Long2IntOpenHashMap chunkUpdates = new Long2IntOpenHashMap(81, 0.25f);
+
+    // Columns(x/z packed as a long) with block updates this batch, which get patched with the batch
+    public LongOpenHashSet dirtyColumns = new LongOpenHashSet();
+
+    // Chunks with too many block updates this batch, which get rescanned with the batch instead
+    public LongOpenHashSet rescanChunks = new LongOpenHashSet();
+    private int ticksSinceBlockUpdates = 0;
+
+    // Scanned chunks saved to disk, so unchanged chunks don't need to be scanned again next time. Null if the server/world couldn't be figured out
+    @Nullable
+    public final ShoreCache shoreCache;
+
+    // The latest published ShoreIndex - what everything reads from. Only swapped on the main thread
+    public ShoreIndex index = ShoreIndex.EMPTY;
+
+    // The latest ShoreIndex built off-thread, waiting to be swapped in
+    private volatile ShoreIndex builtIndex = ShoreIndex.EMPTY;
 
-    // Set of shoreline sites, used to determine angle of area
-    public Map<Long, ObjectOpenHashSet<SitePos>> sites = new Long2ObjectOpenHashMap<>(81, 0.25f);
+    // Holds all scanned water & sites - only used by builds, never on the main thread!
+    private final ShoreIndexBuilder builder = new ShoreIndexBuilder(this);
 
-    // Caches all the sites into one set, not split by chunk.
-    public Set<SitePos> cachedSiteSet = new ObjectOpenHashSet<>();
+    // Updates for the builder, applied in order during the next build
+    private final ConcurrentLinkedQueue<Consumer<ShoreIndexBuilder>> builderUpdates = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean building = new AtomicBoolean(false);
+    // If updates were applied to the builder by a budgeted build, which hasn't been finished yet
+    private volatile boolean buildPending = false;
 
-    // Keep track of which SitePos is closest to all scanned water blocks
-    public Map<Long, Map<BlockPos, SitePos>> waterCache = new Long2ObjectOpenHashMap<>();
+    // When this tick's main thread budget(see TidalConfig#scanBudgetMs) runs out, shared by budgeted scans & builds
+    private long budgetDeadline = 0;
+    // How long the last budgeted build took to finish, and how many ticks it's been put off for
+    private long lastBuildNanos = 0;
+    private int deferredBuildTicks = 0;
 
-    // This is being kept as its own map only for now. I considered a few other options, but didn't know which one was better:
-    // - it's own map(already done)
-    // - Changing the waterCache's Object2ObjectMap to have a ObjectIntPair<SitePos> for the BlockPos value, instead of the current SitePos
-    // - Changing the waterCache's Object2ObjectMap to a Table<SitePos, Integer, Set<BlockPos>> instead
+    // If the old index is being kept while rebuilding(f3+a), and for how long
+    public boolean holdingIndex = false;
+    private int holdTicks = 0;
 
-    // That third option would be the easiest to work with after everything was cached,
-    // but I was afraid that the process of checking if a Set<BlockPos> had already been created for a Table,
-    // and then checking if that set contained the BlockPos given to WaterHandler#findClosestSite would be too expensive
+    // Chunks whose scans have been handed to the builder. Only touched on the main thread
+    public LongOpenHashSet ingestedChunks = new LongOpenHashSet();
 
-    // The second option I was afraid would be too expensive when trying to find all water blocks within a specific distance,
-    // as you'd need to filter through all of them each time you wanted to find a block within a specific distance
+    // Surface hash of each ingested chunk's last scan/patch - rescans & patches are skipped if the chunk still has the same hash
+    public Long2LongOpenHashMap scanHashes = new Long2LongOpenHashMap();
 
-    // this is the equal to Map<ChunkPos, Map<Integer, Set<BlockPos>>>, which may not be great performance-wise?
-    // alternatively, use Long2ObjectOpenHashMap<HashMultimap<Integer, BlockPos>>????
-    public Map<Long, Map<Integer, Set<BlockPos>>> waterDistCache = new Long2ObjectOpenHashMap<>();
+    // Queued/running scans, so they can be cancelled when their chunk is unloaded or rescanned. Only touched on the main thread
+    public Long2ObjectOpenHashMap<ScanExecutor.ScanTask<ScannedChunk>> pendingScans = new Long2ObjectOpenHashMap<>();
 
-    // All scanned shoreline blocks
-    public Map<Long, Set<BlockPos>> shoreBlocks = new Long2ObjectOpenHashMap<>(81, 0.25f);
+    // The generation of each chunk's latest scan - scan results with an older generation are dropped
+    public Long2IntOpenHashMap scanGenerations = new Long2IntOpenHashMap();
 
-    // boolean for if the initial joining/chunk reloading build is finished or not
-    public boolean built = false;
+    // The stride(level of detail) of each chunk's latest scan - only chunks scanned at a lower level of detail are kept here
+    public Long2IntOpenHashMap scanStrides = new Long2IntOpenHashMap();
+    private ChunkPos lastCameraChunk = null;
 
-    // CompletableFuture for scanning all chunks - e.g. finding water blocks, shore blocks, & sites
-    public CompletableFuture<List<ScannedChunk>> chunkScanFuture = null;
+    // Scans waiting to be run on the main thread, closest first(BUDGETED/HYBRID scan modes)
+    public PriorityQueue<BudgetedScan> budgetedScans = new PriorityQueue<>();
 
-    // Executor for list of available threads I think
-    private final Executor executor;
+    // Finished scans, waiting to be merged in on the main thread. Scans finish off-thread, so this is the only thing they touch
+    public ConcurrentLinkedQueue<ScannedChunk> completedScans = new ConcurrentLinkedQueue<>();
+    private int nextScanGeneration = 0;
 
     // Set of all loaded chunks
     public Set<ChunkPos> loadedChunks = Sets.newHashSet();
@@ -117,23 +154,16 @@ public class WaterHandler {
     // Set of all chunks ready to be scanned(e.g. within wave spawning distance)
     public Queue<ChunkPos> unscannedChunkQueue = Queues.newArrayDeque();
 
-    // List of all known water blocks, split by chunk
-    public Map<Long, Set<BlockPos>> waters = Maps.newHashMap();
-
     // Always use MathHelper when working with floats!
 
-    // idea: if no site is within configurable distance, that water is considered open ocean and extra effects can be added there
+    // idea: open ocean water(see ShoreIndex#isOpenOcean) could get extra effects
     // idea 2: if the amount of blocks associated with a SitePos is really small, non-directional ambient particles spawn
 
-    // TODO - create own thread pool
-    // TODO - fastutils new maps/sets
-    // TODO - QuickSort algorithm for finding nearest SitePos???
-    // TODO - update waterDistCache to be better?
-
     public WaterHandler(TidalWaveHandler tidalWaveHandler, ClientWorld world) {
         this.tidalWaveHandler = tidalWaveHandler;
         this.world = world;
-        this.executor = Util.getMainWorkerExecutor();
+        this.shoreCache = ShoreCache.create(world);
+        this.scanStrides.defaultReturnValue(1);
     }
 
     public void tick() {
@@ -141,218 +171,324 @@ public class WaterHandler {
         ClientPlayerEntity player = client.player;
         assert player != null;
 
-        if (!this.unscannedChunkQueue.isEmpty() && tidalWaveHandler.nearbyChunksLoaded) {
-            if (this.chunkScanFuture == null) { // I don't know if there's a better way to do this or not but okay
-                long start = Util.getMeasuringTimeMs();
-                this.chunkScanFuture = scheduleChunkScans();
-                this.chunkScanFuture.thenCompose(chunks -> {
-                    for (ScannedChunk chunk : chunks) {
-                        long chunkPosL = chunk.chunkPos;
-                        if (chunk.waters != null && !chunk.waters.isEmpty()) {
-                            this.waters.computeIfAbsent(chunkPosL, aLong -> Sets.newHashSet()).addAll(chunk.waters);
-                        }
-
-                        if (chunk.sites != null && !chunk.sites.isEmpty()) {
-                            this.sites.computeIfAbsent(chunkPosL, aLong -> new ObjectOpenHashSet<>()).addAll(chunk.sites);
-                        }
-
-                        if (chunk.shorelines != null && !chunk.shorelines.isEmpty()) {
-                            this.shoreBlocks.computeIfAbsent(chunkPosL, aLong -> new ObjectOpenHashSet<>()).addAll(chunk.shorelines);
-                        }
-                    }
-
-                    this.cacheSiteSet();
-
-                    return this.scheduleWaterCache();
-                }).thenAccept(waterCacheResult -> {
-                    this.waterCache = waterCacheResult.waterCache;
-
-                    this.sites.values().forEach(siteSet -> siteSet.forEach(SitePos::clearPositions));
-
-                    for (Map<BlockPos, SitePos> waterSiteMap : this.waterCache.values()) {
-                        for (Map.Entry<BlockPos, SitePos> entry : waterSiteMap.entrySet()) {
-                            BlockPos water = entry.getKey();
-                            SitePos site = entry.getValue();
-                            site.addPos(water);
-                        }
-                    }
-
-                    this.waterDistCache = waterCacheResult.distCache;
-                }).thenRun(() -> {
-                    calcAllSiteCenters();
-                    this.built = true;
-                });
-
-                this.chunkScanFuture.whenComplete((chunks, throwable) -> {
-                    if(DebugHelper.debug()) Tidal.LOGGER.info("Scan time: {} ms", Util.getMeasuringTimeMs() - start);
-                    this.chunkScanFuture = null;
-                });
-            }
+        swapIndex();
+
+        ChunkPos cameraChunk = new ChunkPos(client.gameRenderer.getCamera().getBlockPos());
+        if (!cameraChunk.equals(this.lastCameraChunk)) {
+            this.lastCameraChunk = cameraChunk;
+            promoteChunks(cameraChunk);
         }
 
+        this.budgetDeadline = Util.getMeasuringTimeNano() + TidalConfig.scanBudgetMs * 1_000_000L;
+        if (!this.unscannedChunkQueue.isEmpty()) scheduleChunkScans();
+        if (!this.budgetedScans.isEmpty()) runBudgetedScans();
+        ingestScans();
+        processBlockUpdates();
+        scheduleBuild();
+
         if (DebugHelper.debug()) debugTick(client, player);
     }
 
-    public CompletableFuture<List<ScannedChunk>> scheduleChunkScans() {
-        // scan all chunks
-        this.built = false;
-        List<CompletableFuture<ScannedChunk>> futures = Lists.newArrayList();
+    /**
+     * Swaps in the latest built {@link ShoreIndex}, unless the old one is being held onto while rebuilding.
+     */
+    private void swapIndex() {
+        if (this.holdingIndex) {
+            boolean rebuilt = this.unscannedChunkQueue.isEmpty() && this.pendingScans.isEmpty() && this.completedScans.isEmpty()
+                    && this.builderUpdates.isEmpty() && !this.buildPending && !this.building.get();
+            if (!rebuilt && ++this.holdTicks < MAX_REBUILD_HOLD_TICKS) return;
+            this.holdingIndex = false;
+        }
+        this.index = this.builtIndex;
+    }
 
-        int chunkQueueSize = this.unscannedChunkQueue.size();
-        for (int i = 0; i < chunkQueueSize; i++) {
-            ChunkPos chunk = unscannedChunkQueue.poll();
-            futures.add(scheduleChunkScan(chunk));
+    /**
+     * Queues an update for the {@link ShoreIndexBuilder}, which is applied during the next build.
+     */
+    private void updateBuilder(Consumer<ShoreIndexBuilder> update) {
+        this.builderUpdates.add(update);
+    }
+
+    /**
+     * Starts a build on the {@link ScanExecutor}(or on the main thread in the BUDGETED scan mode, see {@link WaterHandler#runBudgetedBuild()}) if there are any queued builder updates, and no build is running already.<br>
+     * The build applies all queued updates, reassigns the closest sites of the updated chunks, and then publishes a new {@link ShoreIndex}.
+     * Updates queued while a build is running are picked up by the next tick's build.
+     */
+    public void scheduleBuild() {
+        if ((this.builderUpdates.isEmpty() && !this.buildPending) || !this.building.compareAndSet(false, true)) return;
+
+        if (TidalConfig.scanMode == TidalConfig.ScanMode.BUDGETED) {
+            try {
+                runBudgetedBuild();
+            } finally {
+                this.building.set(false);
+            }
+            return;
         }
 
-        return Util.combineSafe(futures);
+        // ran before any scans, so finished scans don't wait behind a long scan queue
+        ScanExecutor.submit(-1, this::build);
+    }
+
+    private ShoreIndex build() {
+        try {
+            long start = Util.getMeasuringTimeMs();
+            int updates = 0;
+            Consumer<ShoreIndexBuilder> update;
+            while ((update = this.builderUpdates.poll()) != null) {
+                update.accept(this.builder);
+                updates++;
+            }
+            this.buildPending = false;
+            this.builtIndex = this.builder.build();
+
+            if (DebugHelper.debug()) Tidal.LOGGER.info("Built shore index from {} updates in {} ms", updates, Util.getMeasuringTimeMs() - start);
+            return this.builtIndex;
+        } finally {
+            this.building.set(false);
+        }
     }
 
-    private CompletableFuture<ScannedChunk> scheduleChunkScan(ChunkPos pos) {
-        return CompletableFuture.supplyAsync(() -> {
-            ChunkScanner chunkScanner = new ChunkScanner(this, this.world, pos);
-            return chunkScanner.scan();
-        }, executor);
+    /**
+     * Runs a build on the main thread in two stages, both charged against what's left of this tick's {@link TidalConfig#scanBudgetMs} after the budgeted scans.
+     * <br><br>
+     * Queued updates are applied one at a time until the budget runs out, and the rest wait for the next tick.
+     * Once they're all applied, the build is only finished(reassigning sites & publishing the index) if the time the last build took to finish still fits in the budget,
+     * unless it's been put off for {@link WaterHandler#MAX_DEFERRED_BUILD_TICKS} ticks already, so busy scanning can't hold off new waves forever.
+     */
+    private void runBudgetedBuild() {
+        Consumer<ShoreIndexBuilder> update;
+        while (Util.getMeasuringTimeNano() < this.budgetDeadline && (update = this.builderUpdates.poll()) != null) {
+            update.accept(this.builder);
+            this.buildPending = true;
+        }
+        if (!this.builderUpdates.isEmpty()) return;
+
+        long start = Util.getMeasuringTimeNano();
+        if (this.budgetDeadline - start < this.lastBuildNanos && ++this.deferredBuildTicks < MAX_DEFERRED_BUILD_TICKS) return;
+
+        this.buildPending = false;
+        this.builtIndex = this.builder.build();
+        this.lastBuildNanos = Util.getMeasuringTimeNano() - start;
+        this.deferredBuildTicks = 0;
+        if (DebugHelper.debug()) Tidal.LOGGER.info("Finished budgeted shore index build in {} ms", this.lastBuildNanos / 1_000_000.0);
     }
 
-    // Gives waterCache/waterDistCache maps to replace current maps with, instead of trying to modify current maps
-    // Trying to modify the current maps via the CompletableFutures, even from `.thenApply()`, (supposed to be main thread I think)
-    // kept resulting with weird, seemingly desync-related issues, so I gave up.
-    public record WaterCacheResult(Map<Long, Map<BlockPos, SitePos>> waterCache,
-                                   Map<Long, Map<Integer, Set<BlockPos>>> distCache) {
+    public void scheduleChunkScans() {
+        int chunkQueueSize = this.unscannedChunkQueue.size();
+        for (int i = 0; i < chunkQueueSize; i++) {
+            ChunkPos chunk = unscannedChunkQueue.poll();
+            scheduleChunkScan(chunk);
+        }
     }
 
-    public CompletableFuture<WaterCacheResult> scheduleWaterCache() {
-        // calculate all water block's closest sites first, then recalc centers
-        List<CompletableFuture<WaterSiteChunk>> futures = Lists.newArrayList();
+    /**
+     * Submits a chunk scan to the {@link ScanExecutor}(or queues it to be run on the main thread, depending on the {@link TidalConfig#scanMode}), prioritised by the chunk's distance from the camera, and stamps it with a new generation.
+     */
+    private void scheduleChunkScan(ChunkPos pos) {
+        long chunkPosL = pos.toLong();
+        cancelScan(chunkPosL);
 
-        for (Map.Entry<Long, Set<BlockPos>> entry : this.waters.entrySet()) {
-            long chunkPosL = entry.getKey();
-            if (!this.loadedChunks.contains(new ChunkPos(chunkPosL))) continue;
+        int generation = ++this.nextScanGeneration;
+        this.scanGenerations.put(chunkPosL, generation);
 
-            futures.add(scheduleWaterScan(chunkPosL, entry.getValue()));
+        ChunkPos cameraChunk = new ChunkPos(MinecraftClient.getInstance().gameRenderer.getCamera().getBlockPos());
+        int stride = getScanStride(cameraChunk, pos);
+        if (stride > 1) {
+            this.scanStrides.put(chunkPosL, stride);
+        } else {
+            this.scanStrides.remove(chunkPosL);
         }
 
-        return Util.combineSafe(futures).thenApply(chunks -> {
-            Map<Long, Map<BlockPos, SitePos>> waterCache = new Long2ObjectOpenHashMap<>();
-            Map<Long, Map<Integer, Set<BlockPos>>> distCache = new Long2ObjectOpenHashMap<>();
+        double priority = cameraChunk.getSquaredDistance(pos);
+        if (TidalConfig.scanMode == TidalConfig.ScanMode.ASYNC) {
+            submitScan(pos, generation, stride, priority);
+            return;
+        }
 
-            for (WaterSiteChunk chunk : chunks) {
-                long chunkPosL = chunk.chunkPos;
-                waterCache.put(chunkPosL, chunk.waterSiteMap);
-                distCache.put(chunkPosL, chunk.distWaterMap);
-            }
+        // the snapshot is only taken once the scan runs, so it doesn't miss any changes while waiting
+        ScanExecutor.ScanTask<ScannedChunk> task = ScanExecutor.create(priority, () -> scanChunk(ChunkSnapshot.capture(this.world, pos, stride), generation));
+        watchScan(task, pos, generation);
+        this.budgetedScans.add(new BudgetedScan(pos, generation, stride, task));
+    }
 
-            return new WaterCacheResult(waterCache, distCache);
-        });
+    /**
+     * Submits a chunk scan to the {@link ScanExecutor}.
+     */
+    private void submitScan(ChunkPos pos, int generation, int stride, double priority) {
+        // snapshot taken here on the main thread, so the scan never reads the world off-thread
+        ChunkSnapshot snapshot = ChunkSnapshot.capture(this.world, pos, stride);
+        ScanExecutor.ScanTask<ScannedChunk> task = ScanExecutor.submit(priority, () -> scanChunk(snapshot, generation));
+        watchScan(task, pos, generation);
     }
 
-    private CompletableFuture<WaterSiteChunk> scheduleWaterScan(long chunkPosL, Set<BlockPos> waters) {
-        return CompletableFuture.supplyAsync(() -> {
-            Map<BlockPos, SitePos> siteMap = new Object2ObjectOpenHashMap<>();
-            Map<Integer, Set<BlockPos>> distMap = new Int2ObjectOpenHashMap<>();
-            for (BlockPos water : waters) {
-                IntObjectPair<SitePos> closestSite = calcClosestSite(water);
-                if (closestSite == null) continue;
-                int dist = closestSite.firstInt();
-                SitePos site = closestSite.second();
-                siteMap.put(water, site);
-                distMap.computeIfAbsent(dist, aInt -> new ObjectOpenHashSet<>()).add(water);
-            }
-            return new WaterSiteChunk(chunkPosL, siteMap, distMap);
-        }, executor);
+    private ScannedChunk scanChunk(ChunkSnapshot snapshot, int generation) {
+        try {
+            ChunkScanner chunkScanner = new ChunkScanner(this, snapshot);
+            ScannedChunk chunk = chunkScanner.scan();
+            chunk.generation = generation;
+            chunk.hash = snapshot.hash;
+            return chunk;
+        } finally {
+            snapshot.release();
+        }
     }
 
-    @Nullable //FIXME - optimize this(Hama said it should be easy)
-    public IntObjectPair<SitePos> calcClosestSite(BlockPos pos) {
-        double distance = 0;
-        SitePos closest = null;
+    private void watchScan(ScanExecutor.ScanTask<ScannedChunk> task, ChunkPos pos, int generation) {
+        task.future.exceptionally(throwable -> {
+            // already logged - treat the chunk as dry, so it isn't stuck waiting on its scan
+            ScannedChunk empty = ScannedChunk.empty(pos);
+            empty.generation = generation;
+            return empty;
+        }).thenAccept(chunk -> {
+            if (chunk != null) this.completedScans.add(chunk); // null if cancelled
+        });
+        this.pendingScans.put(pos.toLong(), task);
+    }
 
-        for (SitePos site : this.cachedSiteSet) {
-            double dx = pos.getX() + 0.5 - site.getX();
-            double dz = pos.getZ() + 0.5 - site.getZ();
-            double checkDist = dx * dx + dz * dz;
-//            double checkDist = Math.max(Math.abs(dx), Math.abs(dz)); //alt distance formulas for future config
-//            double checkDist = Math.abs(dx) + Math.abs(dz);
+    /**
+     * Runs queued scans on the main thread, closest first, until {@link TidalConfig#scanBudgetMs} is used up - the rest wait for the next tick.<br>
+     * In the HYBRID scan mode, scans only get half of the budget, and the other half is spent handing the next scans to the {@link ScanExecutor}.
+     * Handing a scan off still captures its chunk's snapshot here on the main thread(see {@link WaterHandler#submitScan(ChunkPos, int, int, double)}), so scans which don't fit in the budget wait for the next tick either way.
+     */
+    public void runBudgetedScans() {
+        long now = Util.getMeasuringTimeNano();
+        long scanDeadline = switch (TidalConfig.scanMode) {
+            case BUDGETED -> this.budgetDeadline;
+            case HYBRID -> now + Math.max(0, this.budgetDeadline - now) / 2;
+            case ASYNC -> now; // the scan mode was changed - only hand the rest off
+        };
+
+        BudgetedScan scan;
+        while ((scan = this.budgetedScans.peek()) != null && Util.getMeasuringTimeNano() < scanDeadline) {
+            this.budgetedScans.poll();
+            scan.task.run(); // does nothing if cancelled
+        }
+        if (TidalConfig.scanMode == TidalConfig.ScanMode.BUDGETED) return;
 
-            if (closest == null || checkDist < distance) {
-                closest = site;
-                distance = checkDist;
-            }
+        while ((scan = this.budgetedScans.peek()) != null && Util.getMeasuringTimeNano() < this.budgetDeadline) {
+            this.budgetedScans.poll();
+            if (scan.task.isCancelled()) continue;
+            scan.task.cancel();
+            submitScan(scan.pos, scan.generation, scan.stride, scan.task.priority);
         }
+    }
 
-        int intDistance = (int) Math.sqrt(distance);
-        return IntObjectPair.of(intDistance, closest);
+    /**
+     * A chunk scan waiting to be run on the main thread.
+     */
+    public record BudgetedScan(ChunkPos pos, int generation, int stride, ScanExecutor.ScanTask<ScannedChunk> task) implements Comparable<BudgetedScan> {
+        @Override
+        public int compareTo(BudgetedScan other) {
+            return this.task.compareTo(other.task);
+        }
     }
 
     /**
-     * Gets a Set of BlockPos' that are a specified distance away from their closest SitePos within a ChunkPos. Used for spawning waves.
+     * Picks the level of detail to scan a chunk at - full detail within {@link TidalConfig#lodInnerRadius} chunks of the camera,
+     * then every 2nd column for the first half of the remaining scan radius, and every 4th column for the rest.
      *
-     * @param chunkPos The ChunkPos to get the water blocks from
-     * @param distance The distance to check for
-     * @return The Set of BlockPos, or null if none are found.
+     * @return The chunk's scan stride - 1, 2, or 4
      */
-    @Nullable
-    public Set<BlockPos> getWaterCacheAtDistance(ChunkPos chunkPos, int distance) {
-        long chunkPosL = chunkPos.toLong();
-        if (this.waterDistCache.containsKey(chunkPosL)) return this.waterDistCache.get(chunkPosL).get(distance);
-        return null;
+    public int getScanStride(ChunkPos cameraChunk, ChunkPos pos) {
+        if (!TidalConfig.lodScanning) return 1;
+        double distance = Math.sqrt(cameraChunk.getSquaredDistance(pos));
+        int inner = TidalConfig.lodInnerRadius;
+        if (distance <= inner) return 1;
+        return distance <= inner + Math.max(1, (TidalConfig.chunkRadius - inner) / 2) ? 2 : 4;
     }
 
     /**
-     * Cache and or return the closest SitePos of a BlockPos(assumed to be, but technically doesn't have to be, a water block).
-     *
-     * @param pos BlockPos to use for finding the closest SitePos.
-     * @return The BlockPos' closest SitePos, or {@link BlockPos#ORIGIN} if the site is null.
+     * Rescans chunks which were scanned at a lower level of detail than they should be at now, e.g. because the camera moved closer. Their old scans are kept until the new ones finish.
      */
-    public SitePos getSiteForPos(BlockPos pos) {
-        long chunkPosL = new ChunkPos(pos).toLong();
-        return this.waterCache
-                .computeIfAbsent(chunkPosL,
-                        chunkPosL2 -> new Object2ObjectOpenHashMap<>()
-                ).computeIfAbsent(pos, pos1 -> {
-                    SitePos closest = findAndCacheClosestSite(chunkPosL, pos);
-                    if (closest != null) closest.addPos(pos);
-                    return closest;
-                });
+    public void promoteChunks(ChunkPos cameraChunk) {
+        if (this.scanStrides.isEmpty()) return;
+        LongArrayList promoted = new LongArrayList();
+        for (Long2IntMap.Entry entry : this.scanStrides.long2IntEntrySet()) {
+            ChunkPos pos = new ChunkPos(entry.getLongKey());
+            if (getScanStride(cameraChunk, pos) < entry.getIntValue()) promoted.add(entry.getLongKey());
+        }
+
+        for (int i = 0; i < promoted.size(); i++) {
+            scheduleChunkScan(new ChunkPos(promoted.getLong(i)));
+        }
     }
 
     /**
-     * Calculates the closest SitePos from a BlockPos. Used by {@link WaterHandler#getSiteForPos(BlockPos)}.
+     * Cancels a chunk's queued scan, if it has one. Any scan results which already finished are dropped for being stale.
      *
-     * @param pos The BlockPos to use for finding the closest SitePos
-     * @return The closest SitePos, or null if no SitePos' are currently stored.
+     * @param chunkPosL The ChunkPos(as a long) to cancel the scan of
      */
-    @Nullable
-    public SitePos findAndCacheClosestSite(long chunkPosL, BlockPos pos) {
-        if (this.sites.isEmpty()) return null;
+    public void cancelScan(long chunkPosL) {
+        ScanExecutor.ScanTask<ScannedChunk> task = this.pendingScans.remove(chunkPosL);
+        if (task != null) task.cancel();
+        this.scanGenerations.remove(chunkPosL);
+    }
 
-        if (this.cachedSiteSet == null || this.cachedSiteSet.isEmpty()) {
-            this.cacheSiteSet();
+    /**
+     * Hands all finished scans to the {@link ShoreIndexBuilder}, where each chunk is stitched to its neighbours, and the water in & around it has its closest site reassigned.
+     * Stale scans(the chunk was unloaded/rescanned since) are dropped.
+     */
+    public void ingestScans() {
+        ScannedChunk chunk;
+        while ((chunk = this.completedScans.poll()) != null) {
+            long chunkPosL = chunk.chunkPos;
+            if (!this.scanGenerations.containsKey(chunkPosL) || this.scanGenerations.get(chunkPosL) != chunk.generation) continue; // stale
+            this.pendingScans.remove(chunkPosL);
+            this.ingestedChunks.add(chunkPosL);
+            this.scanHashes.put(chunkPosL, chunk.hash);
+
+            ScannedChunk scannedChunk = chunk;
+            updateBuilder(builder -> builder.putChunk(scannedChunk));
         }
+    }
 
-        IntObjectPair<SitePos> siteDistPair = this.calcClosestSite(pos);
-        if (siteDistPair == null) return null;
-        int distance = siteDistPair.firstInt();
-        SitePos site = siteDistPair.second();
-
-        if (site != null) {
-            this.waterDistCache.computeIfAbsent(
-                    chunkPosL, chunkPosL2 -> new Int2ObjectOpenHashMap<>()
-            ).computeIfAbsent(
-                    distance, dist -> new ObjectOpenHashSet<>()
-            ).add(pos);
-        }
+    /**
+     * The "before" side of a block update - a non-solid block(e.g. a torch or sign) replacing the top block of a column that was scanned as water or solid land still changes the column.
+     *
+     * @return If the block is at the surface of a column which was water or solid land in the last scan
+     */
+    private boolean wasWaterOrSolid(int x, int y, int z) {
+        TerrainField terrain = this.index.terrain;
+        if (!terrain.isWater(x, z) && !terrain.isSolid(x, z)) return false;
+        return Math.abs(y - terrain.getSurfaceY(x, z)) <= 1;
+    }
+
+    /**
+     * @see ShoreIndex#collectWatersAtDistance(ChunkPos, int, LongCollection)
+     */
+    public void collectWatersAtDistance(ChunkPos chunkPos, int distance, LongCollection out) {
+        this.index.collectWatersAtDistance(chunkPos, distance, out);
+    }
 
-        return site;
+    /**
+     * @see ShoreIndex#getSpawnPlansForTick(long)
+     */
+    public SpawnPlan[] getSpawnPlansForTick(long time) {
+        return this.index.getSpawnPlansForTick(time);
+    }
+
+    /**
+     * @see ShoreIndex#getSiteForPos(long)
+     */
+    @Nullable
+    public SitePos getSiteForPos(long pos) {
+        return this.index.getSiteForPos(pos);
+    }
+
+    @Nullable
+    public SitePos getSiteForPos(BlockPos pos) {
+        return this.index.getSiteForPos(pos);
     }
 
     private void debugTick(MinecraftClient client, ClientPlayerEntity player) {
         if (this.world.getTime() % 10 != 0) return;
         boolean farParticles = false;
+        ShoreIndex index = this.index;
 
         // display all shoreline blocks
         // display all sitePos'
-        List<SitePos> allSites = this.sites.values().stream().flatMap(Collection::stream).toList();
+        List<SitePos> allSites = index.getAllSites();
         for (SitePos site : allSites) {
             this.world.addParticle(ParticleTypes.EGG_CRACK, true, site.getX() + 0.5, site.getY() + 2, site.getZ() + 0.5, 0, 0, 0);
         }
@@ -361,20 +497,27 @@ public class WaterHandler {
         if (!DebugHelper.spyglassInHotbar()) return;
 
         // display all shoreline blocks
-        List<BlockPos> allShoreBLocks = this.shoreBlocks.values().stream().flatMap(Collection::stream).toList();
         ParticleEffect shoreEffect = new DebugShoreParticle.DebugShoreParticleEffect(new Vector3f(1f, 1f, 1f), 1f);
-        for (BlockPos shore : allShoreBLocks) {
-            Vec3d pos = shore.toCenterPos();
-            this.world.addParticle(shoreEffect, pos.getX(), pos.getY() + 1, pos.getZ(), 0, 0, 0);
+        LongArrayList shoreBlocks = new LongArrayList();
+        for (ScannedChunk chunk : index.chunks.values()) {
+            chunk.collectShorelines(shoreBlocks);
+        }
+        for (ChunkSeam seam : Iterables.concat(index.eastSeams.values(), index.southSeams.values())) {
+            seam.collectShorelines(shoreBlocks);
+        }
+        for (int i = 0; i < shoreBlocks.size(); i++) {
+            long shore = shoreBlocks.getLong(i);
+            this.world.addParticle(shoreEffect, BlockPos.unpackLongX(shore) + 0.5, BlockPos.unpackLongY(shore) + 1.5, BlockPos.unpackLongZ(shore) + 0.5, 0, 0, 0);
         }
 
         // display all water blocks pos', colored by closest site
         int totalSites = allSites.size();
-        for (Map<BlockPos, SitePos> posSiteMap : this.waterCache.values()) {
-            for (Map.Entry<BlockPos, SitePos> entry : posSiteMap.entrySet()) {
-                BlockPos blockPos = entry.getKey();
+        for (WaterSiteChunk siteChunk : index.waterCache.values()) {
+            for (int i = 0; i < 256; i++) {
+                SitePos site = siteChunk.getSite(i);
+                if (site == null) continue;
+                BlockPos blockPos = BlockPos.fromLong(siteChunk.scan.getPos(i));
                 if (!blockPos.isWithinDistance(player.getPos(), 100)) continue;
-                SitePos site = entry.getValue();
 
                 int siteIndex = allSites.indexOf(site);
                 Vector3f color = DebugHelper.debugColor(siteIndex, totalSites);
@@ -387,45 +530,96 @@ public class WaterHandler {
     }
 
     /**
-     * Called during a block update. Used to count how many block updates have happened in any given chunk. After enough updates in a chunk, that chunk is rescanned.
+     * Called during a block update. Updates which can't change the surface(see {@link StateRelevance}, and anything below the top block) are ignored - non-solid blocks only count if they replaced the top block of a scanned water or solid column.<br>
+     * Otherwise, the updated column is marked as dirty, so it can be patched with the next batch. After enough updates in a chunk in one batch, that chunk is rescanned instead.
      *
      * @param pos   The BlockPos that was updated
      * @param state The new BlockState of the updated BlockPos
      */
     public void onBlockUpdate(BlockPos pos, BlockState state) {
-        long chunkPosL = new ChunkPos(pos).toLong();
-        int currentUpdates = this.chunkUpdates.getOrDefault(chunkPosL, 0) + 1;
+        int x = pos.getX();
+        int z = pos.getZ();
+        if (!StateRelevance.isRelevant(state) && !wasWaterOrSolid(x, pos.getY(), z)) return;
+        // the heightmap is already updated, and anything more than 1 below the top block(see ChunkSnapshot's floating blocks) can't change the column
+        if (pos.getY() < this.world.getTopY(Heightmap.Type.WORLD_SURFACE, x, z) - 2) return;
+
+        long chunkPosL = ChunkPos.toLong(x >> 4, z >> 4);
+        int currentUpdates = this.chunkUpdates.addTo(chunkPosL, 1) + 1;
         if (currentUpdates >= TidalConfig.chunkUpdatesRescanAmount) {
-            if (this.rescanChunkPos(new ChunkPos(chunkPosL))) {
-                currentUpdates = 0;
+            this.rescanChunks.add(chunkPosL);
+            return;
+        }
+
+        this.dirtyColumns.add(ChunkPos.toLong(x, z));
+    }
+
+    /**
+     * Processes all block updates since the last batch, once every {@link TidalConfig#blockUpdateInterval} ticks - chunks with too many updates are rescanned,
+     * and the dirty columns of all other chunks are re-sampled & queued as patches for the {@link ShoreIndexBuilder}.
+     * <br><br>
+     * If a dirty chunk is currently being scanned, that scan may have already read the old blocks, so it is rescanned again instead.
+     */
+    public void processBlockUpdates() {
+        if (this.dirtyColumns.isEmpty() && this.rescanChunks.isEmpty()) return;
+        if (++this.ticksSinceBlockUpdates < TidalConfig.blockUpdateInterval) return;
+        this.ticksSinceBlockUpdates = 0;
+
+        // group the dirty columns by chunk
+        Long2ObjectOpenHashMap<IntArrayList> dirtyChunks = new Long2ObjectOpenHashMap<>();
+        for (LongIterator iterator = this.dirtyColumns.iterator(); iterator.hasNext(); ) {
+            long column = iterator.nextLong();
+            int x = ChunkPos.getPackedX(column);
+            int z = ChunkPos.getPackedZ(column);
+            long chunkPosL = ChunkPos.toLong(x >> 4, z >> 4);
+            if (this.rescanChunks.contains(chunkPosL)) continue;
+            dirtyChunks.computeIfAbsent(chunkPosL, chunkPos -> new IntArrayList()).add(ColumnMask.index(x & 15, z & 15));
+        }
+        this.dirtyColumns.clear();
+        this.chunkUpdates.clear();
+
+        for (Long2ObjectMap.Entry<IntArrayList> entry : dirtyChunks.long2ObjectEntrySet()) {
+            long chunkPosL = entry.getLongKey();
+            // lower detail scans can't be patched column by column - they're cheap to rescan anyway
+            if (this.pendingScans.containsKey(chunkPosL) || (this.ingestedChunks.contains(chunkPosL) && this.scanStrides.get(chunkPosL) > 1)) {
+                this.rescanChunks.add(chunkPosL);
+                continue;
             }
+            if (!this.ingestedChunks.contains(chunkPosL)) continue; // not scanned yet - the scan will see the update anyway
+
+            // snapshot taken now, the patch itself happens during the next build
+            ChunkSnapshot snapshot = ChunkSnapshot.capture(this.world, new ChunkPos(chunkPosL));
+            if (snapshot.hash == this.scanHashes.get(chunkPosL)) {
+                // nothing the scan cares about changed(e.g. a door or redstone toggled)
+                snapshot.release();
+                continue;
+            }
+            this.scanHashes.put(chunkPosL, snapshot.hash);
+            IntArrayList columns = entry.getValue();
+            updateBuilder(builder -> builder.patchChunk(snapshot, columns));
+        }
+
+        if (this.rescanChunks.isEmpty()) return;
+        for (LongIterator iterator = this.rescanChunks.iterator(); iterator.hasNext(); ) {
+            this.rescanChunk(iterator.nextLong());
         }
-        this.chunkUpdates.put(chunkPosL, currentUpdates);
+        this.rescanChunks.clear();
+        this.checkUnscannedChunks();
     }
 
     /**
      * Easy method to clear & rescan chunks - called from chunk reload(f3+a)
+     * <br><br>
+     * The current {@link ShoreIndex} is kept until all chunks in range have been rescanned, so waves don't disappear in the meantime.
      */
     public void rebuild() {
         this.clear(); // clear all data(ticking scanners -> null, sites/shoreblocks/waterblocks all cleared)
+        this.holdingIndex = true;
+        this.holdTicks = 0;
 
         this.unscannedChunks.addAll(this.loadedChunks);
-        this.chunkScanFuture = null;
         this.checkUnscannedChunks();
     }
 
-    // I feel comfortable doing this because this calculation is usually only taken 1-3ms for me
-    public void calcAllSiteCenters() {
-        for (SitePos site : this.sites.values().stream().flatMap(Collection::stream).toList()) {
-            site.updateCenter();
-        }
-    }
-
-    public void cacheSiteSet() {
-        // caching this list saved ~200ms during a build/rebuild
-        this.cachedSiteSet = new ObjectOpenHashSet<>(this.sites.values().stream().flatMap(Collection::stream).collect(Collectors.toSet()));
-    }
-
     /**
      * Schedules a chunk to be scanned water blocks, shoreblocks, sites, etc. Called when a new chunk is loaded.
      *
@@ -467,17 +661,32 @@ public class WaterHandler {
     }
 
     /**
-     * Schedules a ChunkPos to be rescanned, removing the chunk's blocks from all trackers.
+     * Schedules a ChunkPos to be rescanned, removing the chunk's blocks from all trackers - unless its surface hash hasn't changed since its last scan(see {@link WaterHandler#rescanChunk(long)}).<br>
+     * Rescanning a chunk which is already being scanned is fine, the older scan's results are dropped once they finish.
      *
-     * @param chunkPos ChunkPos to remove
-     * @return If the reschedule was successful. It will return false if a scanner is already associated with the ChunkPos
+     * @param chunkPos ChunkPos to rescan
      */
-    public boolean rescanChunkPos(ChunkPos chunkPos) {
-        long chunkPosL = chunkPos.toLong();
-        this.clearChunk(chunkPosL);
-        this.unscannedChunks.add(chunkPos);
+    public void rescanChunkPos(ChunkPos chunkPos) {
+        this.rescanChunk(chunkPos.toLong());
         this.checkUnscannedChunks();
-        return true;
+    }
+
+    /**
+     * Clears a chunk & marks it as unscanned, without checking for chunks to scan - used for rescanning many chunks at once.
+     * <br><br>
+     * If the chunk's surface hash(see {@link ChunkSnapshot#hash}) still matches its last scan, nothing the scan uses changed, so the chunk is kept as is - this way, its {@link SitePos}' & their yaws stay the same.
+     */
+    private void rescanChunk(long chunkPosL) {
+        if (this.ingestedChunks.contains(chunkPosL) && !this.pendingScans.containsKey(chunkPosL)) {
+            ChunkSnapshot snapshot = ChunkSnapshot.capture(this.world, new ChunkPos(chunkPosL), this.scanStrides.get(chunkPosL));
+            boolean unchanged = snapshot.hash == this.scanHashes.get(chunkPosL);
+            snapshot.release();
+            if (unchanged) return;
+        }
+
+        this.cancelScan(chunkPosL);
+        this.clearChunk(chunkPosL);
+        this.unscannedChunks.add(new ChunkPos(chunkPosL));
     }
 
     /**
@@ -488,37 +697,43 @@ public class WaterHandler {
     public void unloadChunk(Chunk chunk) {
         ChunkPos chunkPos = chunk.getPos();
         long chunkPosL = chunkPos.toLong();
+        this.cancelScan(chunkPosL);
         this.clearChunk(chunkPosL);
         this.chunkUpdates.remove(chunkPosL);
+        this.rescanChunks.remove(chunkPosL);
+        this.scanStrides.remove(chunkPosL);
         this.loadedChunks.remove(chunkPos);
         this.unscannedChunks.remove(chunkPos);
     }
 
     /**
-     * Removes a chunk from all trackers, e.g. waitingWaterBlocks, sites, siteCache, shoreblocks.
-     * <br><br>The chunk remains in the scannedChunks & chunkUpdates maps, as it is assumed it is still loaded.
+     * Removes a chunk from all trackers, e.g. its scan, water & sites(removed during the next build).
+     * <br><br>The chunk remains in the loadedChunks & chunkUpdates maps, as it is assumed it is still loaded.
      *
      * @param chunkPosL The ChunkPos(as a long) to remove
      */
     public void clearChunk(long chunkPosL) {
-        this.shoreBlocks.remove(chunkPosL);
-        this.waterCache.remove(chunkPosL);
-        this.waterDistCache.remove(chunkPosL);
-        this.sites.remove(chunkPosL);
-        this.waters.remove(chunkPosL);
-        this.cachedSiteSet.clear(); //resets it
+        if (!this.ingestedChunks.remove(chunkPosL)) return;
+        this.scanHashes.remove(chunkPosL);
+        updateBuilder(builder -> builder.removeChunk(chunkPosL));
     }
 
     /**
      * Clears all maps/sets EXCEPT {@link WaterHandler#loadedChunks}! Used for rebuilding via f3+a
      */
     public void clear() {
-        this.shoreBlocks.clear();
-        this.sites.clear();
-        this.waterCache.clear();
-        this.waterDistCache.clear();
-        this.cachedSiteSet.clear();
+        updateBuilder(ShoreIndexBuilder::clear);
+        this.ingestedChunks.clear();
+        this.scanHashes.clear();
         this.unscannedChunks.clear();
         this.chunkUpdates.clear();
+        this.dirtyColumns.clear();
+        this.rescanChunks.clear();
+        this.pendingScans.values().forEach(ScanExecutor.ScanTask::cancel);
+        this.pendingScans.clear();
+        this.budgetedScans.clear();
+        this.scanGenerations.clear();
+        this.scanStrides.clear();
+        this.completedScans.clear();
     }
 }
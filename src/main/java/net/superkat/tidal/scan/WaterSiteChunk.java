@@ -1,25 +1,112 @@
 package net.superkat.tidal.scan;
 
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
-import net.minecraft.util.math.BlockPos;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import net.superkat.tidal.config.TidalConfig;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
 
+/**
+ * Each water column of a {@link ScannedChunk} and its closest {@link SitePos} & distance from it.
+ * <br><br>
+ * The sites are stored as a small palette, with each column holding a short index into it, which keeps this at well under a kilobyte per chunk.
+ * The index is a short rather than a byte, as a chunk's 256 columns can each have a different site along a jagged coastline, which wouldn't fit in a byte along with 0 for no site.
+ * <br><br>
+ * Water too far from any site is collapsed into open ocean tiles of 4x4 columns(see {@link TidalConfig#openOceanTiles}), which have no per-column entries at all.
+ * The per-column arrays are only created once a column is set, so a chunk of only open ocean is just its tile mask.
+ */
 public class WaterSiteChunk {
     public final long chunkPos;
-    public Map<BlockPos, SitePos> waterSiteMap = new Object2ObjectOpenHashMap<>();
-    public Map<Integer, Set<BlockPos>> distWaterMap = new Int2ObjectOpenHashMap<>();
+    public final ScannedChunk scan;
 
-    public WaterSiteChunk(long chunkPos, Map<BlockPos, SitePos> waterSiteMap, Map<Integer, Set<BlockPos>> distWaterMap) {
-        this.chunkPos = chunkPos;
-        this.waterSiteMap = waterSiteMap;
-        this.distWaterMap = distWaterMap;
+    // all sites used in this chunk
+    public SitePos[] palette = new SitePos[0];
+    // palette index + 1 of each column's closest site - 0 means no site. Null until a column is set
+    @Nullable
+    public short[] siteIds = null;
+    // distance(rounded down, capped at 255) of each column from its closest site. Null until a column is set
+    @Nullable
+    public byte[] dists = null;
+
+    // bits of the 16 4x4 tiles which are open ocean(see tileIndex)
+    public int openOceanTiles = 0;
+
+    public WaterSiteChunk(ScannedChunk scan) {
+        this.chunkPos = scan.chunkPos;
+        this.scan = scan;
     }
 
-    public WaterSiteChunk(long chunkPos) {
-        this.chunkPos = chunkPos;
+    /**
+     * @param index The column's index(see {@link ColumnMask#index(int, int)})
+     * @param site The column's closest site
+     * @param dist The column's distance from that site
+     */
+    public void set(int index, SitePos site, int dist) {
+        if (this.siteIds == null) {
+            this.siteIds = new short[256];
+            this.dists = new byte[256];
+        }
+        this.siteIds[index] = (short) (paletteIndex(site) + 1);
+        this.dists[index] = (byte) Math.min(dist, 255);
     }
 
+    private int paletteIndex(SitePos site) {
+        for (int i = 0; i < this.palette.length; i++) {
+            if (this.palette[i] == site) return i;
+        }
+        // only a handful of sites are ever closest to one chunk's columns, so a linear search & grow by one is fine
+        this.palette = Arrays.copyOf(this.palette, this.palette.length + 1);
+        this.palette[this.palette.length - 1] = site;
+        return this.palette.length - 1;
+    }
+
+    /**
+     * @param tile The tile's index(see {@link WaterSiteChunk#tileIndex(int)})
+     */
+    public void setOpenOcean(int tile) {
+        this.openOceanTiles |= 1 << tile;
+    }
+
+    /**
+     * @param index The column's index(see {@link ColumnMask#index(int, int)})
+     * @return If the column is in an open ocean tile - open ocean columns never have a site
+     */
+    public boolean isOpenOcean(int index) {
+        return (this.openOceanTiles & (1 << tileIndex(index))) != 0;
+    }
+
+    public boolean isEmpty() {
+        return this.siteIds == null && this.openOceanTiles == 0;
+    }
+
+    /**
+     * @param index The column's index(see {@link ColumnMask#index(int, int)})
+     * @return The index(0-15) of the 4x4 tile the column is in
+     */
+    public static int tileIndex(int index) {
+        return ((ColumnMask.getZ(index) >> 2) << 2) | (ColumnMask.getX(index) >> 2);
+    }
+
+    @Nullable
+    public SitePos getSite(int index) {
+        if (this.siteIds == null) return null;
+        int id = this.siteIds[index];
+        if (id == 0) return null;
+        return this.palette[id - 1];
+    }
+
+    public int getDist(int index) {
+        if (this.dists == null) return 0;
+        return this.dists[index] & 0xFF;
+    }
+
+    /**
+     * Adds all water blocks(as longs via BlockPos#asLong) that are a specified distance away from their closest SitePos to a collection. Used for debugging wave spawns(see {@link SpawnPlan}).
+     */
+    public void collectWatersAtDistance(int distance, LongCollection out) {
+        if (this.siteIds == null) return;
+        for (int i = 0; i < 256; i++) {
+            if (this.siteIds[i] != 0 && getDist(i) == distance && this.scan.isSample(i)) out.add(this.scan.getPos(i));
+        }
+    }
 }
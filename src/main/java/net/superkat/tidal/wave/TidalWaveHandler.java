@@ -1,9 +1,10 @@
 package net.superkat.tidal.wave;
 
-import com.google.common.collect.Queues;
 import com.google.common.collect.Sets;
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
-import it.unimi.dsi.fastutil.objects.ObjectArraySet;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.MinecraftClient;
@@ -17,27 +18,21 @@ import net.minecraft.registry.tag.FluidTags;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.MathHelper;
-import net.minecraft.util.math.Vec3d;
-import net.minecraft.util.math.Vec3i;
 import net.minecraft.util.math.random.Random;
 import net.minecraft.world.chunk.WorldChunk;
 import net.superkat.tidal.DebugHelper;
 import net.superkat.tidal.config.TidalConfig;
 import net.superkat.tidal.particles.debug.DebugWaveMovementParticle;
 import net.superkat.tidal.renderer.WaveRenderer;
+import net.superkat.tidal.scan.ScannedChunk;
 import net.superkat.tidal.scan.SitePos;
+import net.superkat.tidal.scan.SpawnPlan;
 import net.superkat.tidal.scan.WaterHandler;
+import net.superkat.tidal.scan.WaterSiteChunk;
 import org.joml.Vector3f;
 
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Queue;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * The main handler, used for spawning/handling tidal waves, as well as ticking the world's {@link WaterHandler}
@@ -47,15 +42,19 @@ public class TidalWaveHandler {
     public WaterHandler waterHandler;
     public WaveRenderer renderer;
 
-    public List<Wave> waves = new ObjectArrayList<>();
-    // Set of BlockPos's currently being covered by waves - used for rendering wet overlay
-    public Set<BlockPos> coveredBlocks = new ObjectArraySet<>();
+    public final WavePool waves;
+    // Blocks recently covered by waves, which slowly dry out - used for rendering wet overlay
+    public final WetnessMap wetness = new WetnessMap();
+    // Spawn plans whose phase has come, waiting to be spawned(see spawnScheduledWaves)
+    public final ObjectArrayFIFOQueue<SpawnPlan> scheduledSpawns = new ObjectArrayFIFOQueue<>();
+    public int spawnedWaves = 0;
 
     public boolean nearbyChunksLoaded = false;
 
     public TidalWaveHandler(ClientWorld world) {
         this.world = world;
         this.waterHandler = new WaterHandler(this, world);
+        this.waves = new WavePool(world, this.wetness);
         this.renderer = new WaveRenderer(this, world);
     }
 
@@ -93,116 +92,96 @@ public class TidalWaveHandler {
      */
     public void tidalTick() {
         if (!this.world.getTickManager().shouldTick()) return;
-        double time = this.world.getTime();
-        if (time % 80 == 0) {
-            spawnAllWaves();
+        long time = this.world.getTime();
+        spawnScheduledWaves(time);
+        if (time % TidalConfig.waveTicks == 0 && DebugHelper.debug()) {
+            debugSpawnPositions();
         }
 
-        boolean updateCoveredBlocks = time % 10 == 0;
-        ObjectArraySet<BlockPos> updatedCovered = new ObjectArraySet<>();
+        this.waves.terrain = this.waterHandler.index.terrain;
+        this.waves.tick();
+        this.wetness.tick(time);
+    }
 
-        for (Iterator<Wave> iterator = waves.iterator(); iterator.hasNext(); ) {
-            Wave wave = iterator.next();
-            wave.tick();
+    /**
+     * Queues the spawn plans of this tick's phase(see {@link SpawnPlan#phase()}) which are near the player, then spawns up to {@link TidalConfig#maxWaveSpawnsPerTick} waves from the queue.
+     * <br><br>
+     * Plans over the cap wait for the next ticks. If the queue ever holds more than a whole cycle's worth of spawns, the oldest are dropped, as they'd be spawning again soon anyway.
+     *
+     * @param time The world time
+     */
+    public void spawnScheduledWaves(long time) {
+        int chunkRadius = TidalConfig.chunkRadius - 2;
+        ChunkPos playerChunk = MinecraftClient.getInstance().player.getChunkPos();
+        for (SpawnPlan plan : this.waterHandler.getSpawnPlansForTick(time)) {
+            int chunkX = BlockPos.unpackLongX(plan.spawnPos()) >> 4;
+            int chunkZ = BlockPos.unpackLongZ(plan.spawnPos()) >> 4;
+            if (Math.abs(chunkX - playerChunk.x) > chunkRadius || Math.abs(chunkZ - playerChunk.z) > chunkRadius) continue;
+            this.scheduledSpawns.enqueue(plan);
+        }
 
-            if (wave.isDead()) {
-                iterator.remove();
-            } else if (updateCoveredBlocks) {
-                updatedCovered.addAll(wave.getCoveredBlocks());
-            }
+        int maxSpawns = TidalConfig.maxWaveSpawnsPerTick;
+        int maxQueued = maxSpawns * TidalConfig.waveTicks;
+        while (this.scheduledSpawns.size() > maxQueued) {
+            this.scheduledSpawns.dequeue();
         }
 
-        if (updateCoveredBlocks) this.coveredBlocks = updatedCovered;
+        for (int i = 0; i < maxSpawns && !this.scheduledSpawns.isEmpty(); i++) {
+            if (spawnWave(this.scheduledSpawns.dequeue(), this.spawnedWaves)) this.spawnedWaves++;
+        }
     }
 
-    public void spawnAllWaves() {
-        int distFromShore = TidalConfig.waveDistFromShore;
+    public void debugSpawnPositions() {
+        if (!DebugHelper.holdingSpyglass() && !DebugHelper.offhandClock()) return;
         int chunkRadius = TidalConfig.chunkRadius - 2;
-
         ChunkPos playerChunk = MinecraftClient.getInstance().player.getChunkPos();
         ChunkPos start = new ChunkPos(playerChunk.x + chunkRadius, playerChunk.z + chunkRadius);
         ChunkPos end = new ChunkPos(playerChunk.x - chunkRadius, playerChunk.z - chunkRadius);
-        Set<BlockPos> waterBlocks = ChunkPos.stream(start, end).map(chunkPos -> this.waterHandler.getWaterCacheAtDistance(chunkPos, distFromShore)).filter(Objects::nonNull).flatMap(Collection::stream).collect(Collectors.toSet());
-        if (waterBlocks.isEmpty()) return;
-        spawnWaves(waterBlocks);
-
-        if (DebugHelper.debug()) {
-            if (DebugHelper.holdingSpyglass()) debugWaveParticles(waterBlocks);
-            if (DebugHelper.offhandClock()) {
-                for (BlockPos water : waterBlocks) {
-                    Vec3d pos = water.toCenterPos();
-                    this.world.addParticle(ParticleTypes.END_ROD, pos.getX(), pos.getY() + 2.5, pos.getZ(), 0, 0, 0);
-                }
-            }
+        LongOpenHashSet waterBlocks = new LongOpenHashSet();
+        for (ChunkPos chunkPos : ChunkPos.stream(start, end).toList()) {
+            this.waterHandler.collectWatersAtDistance(chunkPos, TidalConfig.waveDistFromShore, waterBlocks);
         }
-    }
 
-    public void spawnWaves(Set<BlockPos> waterBlocks) {
-        Set<BlockPos> visited = Sets.newHashSet();
-        int spawned = 0;
-
-        for (BlockPos water : waterBlocks) {
-            if (visited.contains(water)) continue;
-            SitePos site = this.waterHandler.getSiteForPos(water);
-            if (site == null || !site.yawCalculated) continue;
-            if (site.xList.size() < 50) continue;
-
-            float yaw = site.getYaw();
-            Set<BlockPos> connected = findConnected(water, yaw, waterBlocks, visited);
-            visited.addAll(connected);
-
-            boolean bigWave = site.xList.size() >= 100;
-
-            spawned++;
-            float yOffset = MathHelper.sin(spawned) / 16f + 0.65f;
-            BlockPos spawnPos = connected.stream().sorted(Comparator.comparingInt(Vec3i::getZ)).toList().get(connected.size() / 2).add(0, 1, 0);
-
-            BlockPos beneath = spawnPos.add(0, -1, 0);
-            if (world.isAir(beneath) || !world.getBlockState(beneath).getFluidState().isStill()) continue;
-
-            if (world.getBiome(spawnPos).isIn(BiomeTags.IS_RIVER)) bigWave = false;
-
-            Wave wave = new Wave(this.world, spawnPos, yaw, yOffset, bigWave);
-            int width = (int) MathHelper.clamp(connected.size() * 1.5, 1, 3);
-            wave.setWidth(width);
-            this.waves.add(wave);
+        if (DebugHelper.holdingSpyglass()) debugWaveParticles(waterBlocks);
+        if (DebugHelper.offhandClock()) {
+            for (LongIterator iterator = waterBlocks.iterator(); iterator.hasNext(); ) {
+                long water = iterator.nextLong();
+                this.world.addParticle(ParticleTypes.END_ROD, BlockPos.unpackLongX(water) + 0.5, BlockPos.unpackLongY(water) + 3, BlockPos.unpackLongZ(water) + 0.5, 0, 0, 0);
+            }
         }
     }
 
-    public Set<BlockPos> findConnected(BlockPos start, float yaw, Set<BlockPos> waterBlocks, Set<BlockPos> ignoreSet) {
-        int maxLength = 3;
-        Set<BlockPos> connected = Sets.newHashSet();
-        Queue<BlockPos> stack = Queues.newArrayDeque();
-        stack.add(start);
-
-        for (int i = 0; i < maxLength; i++) {
-            BlockPos water = stack.poll();
-            connected.add(water);
-            for (BlockPos check : BlockPos.iterate(water.add(-1, 0, -1), water.add(1, 0, 1))) {
-                if (water == check) continue;
-                if (ignoreSet.contains(check)) continue;
-                if (!waterBlocks.contains(check)) continue;
-
-                SitePos site = this.waterHandler.getSiteForPos(check);
-                if (site == null || !site.yawCalculated || site.xList.size() < 50) continue;
-                if (Math.abs(site.yaw - yaw) > 15) continue;
-                stack.add(new BlockPos(check));
-            }
-
-            if (stack.isEmpty()) break;
-        }
-        return connected;
+    /**
+     * Spawns a wave from its plan(see {@link SpawnPlan}), if the water beneath it is still there & still.
+     *
+     * @param plan The wave's spawn plan
+     * @param spawned How many waves were already spawned - used to vary their height
+     * @return If the wave was spawned
+     */
+    public boolean spawnWave(SpawnPlan plan, int spawned) {
+        BlockPos spawnPos = BlockPos.fromLong(plan.spawnPos());
+        BlockPos beneath = spawnPos.down();
+        if (world.isAir(beneath) || !world.getBlockState(beneath).getFluidState().isStill()) return false;
+
+        boolean bigWave = plan.bigWave();
+        if (bigWave && world.getBiome(spawnPos).isIn(BiomeTags.IS_RIVER)) bigWave = false;
+
+        float yOffset = MathHelper.sin(spawned + 1) / 16f + 0.65f;
+        int wave = this.waves.add(spawnPos, plan.yaw(), yOffset, bigWave);
+        this.waves.width[wave] = plan.width();
+        return true;
     }
 
-    public void debugWaveParticles(Set<BlockPos> waterBlocks) {
+    public void debugWaveParticles(LongSet waterBlocks) {
         Vector3f color = new Vector3f(1f, 1f, 1f); //activates the movement particle's custom colors
 //        Vector3f color = new Vector3f(0.75f, 0.75f, 0.75f); //deactivates the custom colors
         boolean farParticles = false;
 
-        for (BlockPos water : waterBlocks) {
+        for (LongIterator iterator = waterBlocks.iterator(); iterator.hasNext(); ) {
+            long water = iterator.nextLong();
             SitePos site = this.waterHandler.getSiteForPos(water);
-            if (site == null || !site.yawCalculated) continue;
-//            if(site.xList.size() < 50) continue;
+            if (site == null || !site.isYawCalculated()) continue;
+//            if(site.getSize() < 50) continue;
 
             DebugWaveMovementParticle.DebugWaveMovementParticleEffect particleEffect = new DebugWaveMovementParticle.DebugWaveMovementParticleEffect(
                     color,
@@ -210,11 +189,11 @@ public class TidalWaveHandler {
                     site.getYaw(),
                     0.3f,
                     20);
-            this.world.addParticle(particleEffect, farParticles, water.getX(), water.getY() + 2, water.getZ(), 0, 0, 0);
+            this.world.addParticle(particleEffect, farParticles, BlockPos.unpackLongX(water), BlockPos.unpackLongY(water) + 2, BlockPos.unpackLongZ(water), 0, 0, 0);
         }
     }
 
-    public List<Wave> getWaves() {
+    public WavePool getWaves() {
         return this.waves;
     }
 
@@ -290,7 +269,7 @@ public class TidalWaveHandler {
     public void debugTick(MinecraftClient client, ClientPlayerEntity player) {
         // show water direction of water blocks
         if (DebugHelper.holdingCompass() || DebugHelper.offhandCompass()) {
-            if (!this.waterHandler.built) return;
+            if (!this.waterHandler.index.built) return;
 
             ChunkPos playerChunk = player.getChunkPos();
             if (DebugHelper.offhandCompass()) {
@@ -313,12 +292,11 @@ public class TidalWaveHandler {
 
             BlockPos playerPos = player.getBlockPos();
 
-            List<BlockPos> scannedBlocks = this.waterHandler.waterCache.values().stream().flatMap(map -> map.keySet().stream()).toList();
-            if (scannedBlocks.contains(playerPos)) {
-                long chunkPosL = new ChunkPos(playerPos).toLong();
-                SitePos site = this.waterHandler.waterCache.get(chunkPosL).get(playerPos);
+            WaterSiteChunk siteChunk = this.waterHandler.index.waterCache.get(new ChunkPos(playerPos).toLong());
+            SitePos site = siteChunk == null ? null : siteChunk.getSite(ScannedChunk.indexOf(playerPos.asLong()));
+            if (site != null) {
 //                System.out.println(world.getBiome(site.getPos()).isIn(BiomeTags.IS_RIVER));
-                System.out.println(site.xList.size());
+                System.out.println(site.getSize());
             }
         }
     }
@@ -327,13 +305,13 @@ public class TidalWaveHandler {
         Vector3f color = new Vector3f(1f, 1f, 1f); //activates the movement particle's custom colors
 //        Vector3f color = new Vector3f(0.75f, 0.75f, 0.75f); //deactivates the custom colors
 
-        Map<BlockPos, SitePos> map = this.waterHandler.waterCache.get(chunkPosL);
-        if (map == null) return;
+        WaterSiteChunk siteChunk = this.waterHandler.index.waterCache.get(chunkPosL);
+        if (siteChunk == null) return;
 
-        for (Map.Entry<BlockPos, SitePos> entry : map.entrySet()) {
-            BlockPos pos = entry.getKey();
-            SitePos sitePos = entry.getValue();
-            if (sitePos == null || !sitePos.yawCalculated) continue;
+        for (int i = 0; i < 256; i++) {
+            SitePos sitePos = siteChunk.getSite(i);
+            if (sitePos == null || !sitePos.isYawCalculated()) continue;
+            BlockPos pos = BlockPos.fromLong(siteChunk.scan.getPos(i));
             DebugWaveMovementParticle.DebugWaveMovementParticleEffect particleEffect = new DebugWaveMovementParticle.DebugWaveMovementParticleEffect(
                     color,
                     1f,
@@ -0,0 +1,54 @@
+package net.superkat.tidal.wave;
+
+import net.minecraft.client.world.ClientWorld;
+import net.superkat.tidal.TidalParticles;
+import net.superkat.tidal.particles.SprayParticleEffect;
+
+/**
+ * A side effect of a wave's tick(particles, for now), queued during the wave physics and spawned afterward on the main thread(see {@link WavePool#tick()}).
+ * <br><br>
+ * Everything needed is copied in when queued, as the wave will have moved on(or been removed) by the time the effect spawns.
+ */
+public sealed interface WaveEffect {
+    void spawn(ClientWorld world);
+
+    /**
+     * A wave hit a block - intensity depends on current speed & and if it was washing up
+     */
+    record Spray(double x, double y, double z, float yaw, float intensity, float scale, float velX, float velZ, boolean bigWave) implements WaveEffect {
+        @Override
+        public void spawn(ClientWorld world) {
+            int sprayAmount = this.bigWave ? 3 : 1;
+            for (int j = 0; j < sprayAmount; j++) {
+                world.addParticle(TidalParticles.SPLASH_PARTICLE, this.x, this.y, this.z, world.random.nextGaussian() * 0.1f, Math.abs(world.random.nextGaussian()) * 0.1f + 0.1f, world.random.nextGaussian() * 0.1f);
+                if (this.bigWave) {
+                    world.addParticle(TidalParticles.BIG_SPLASH_PARTICLE, this.x + world.random.nextGaussian() / 2f, this.y, this.z + world.random.nextGaussian() / 2f, 0, 0.01, 0);
+                }
+            }
+
+            world.addParticle(new SprayParticleEffect(this.yaw - 180f, this.intensity, this.scale), this.x, this.y - 0.05f, this.z, -this.velX, 0, -this.velZ);
+        }
+    }
+
+    /**
+     * A wave in waterfall mode fell into water
+     */
+    record WaterfallSplash(double x, double y, double z, float width, boolean bigWave) implements WaveEffect {
+        @Override
+        public void spawn(ClientWorld world) {
+            int splashAmount = this.bigWave ? 7 : 3;
+            float splashIntensity = this.bigWave ? 0.2f : 0.1f;
+            for (int w = 0; w < this.width; w++) {
+                for (int j = 0; j < splashAmount; j++) {
+                    world.addParticle(TidalParticles.SPLASH_PARTICLE,
+                            this.x + world.random.nextGaussian(),
+                            this.y,
+                            this.z + world.random.nextGaussian(),
+                            world.random.nextGaussian() * splashIntensity,
+                            Math.abs(world.random.nextGaussian()) * splashIntensity + splashIntensity,
+                            world.random.nextGaussian() * splashIntensity);
+                }
+            }
+        }
+    }
+}
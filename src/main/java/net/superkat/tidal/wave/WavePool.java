@@ -0,0 +1,619 @@
+package net.superkat.tidal.wave;
+
+import net.minecraft.client.color.world.BiomeColors;
+import net.minecraft.client.render.LightmapTextureManager;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.LightType;
+import net.superkat.tidal.scan.TerrainField;
+import org.jetbrains.annotations.Range;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Handles wave position/movement, scale, color, and lifecycle of all waves - stored as a structure of arrays, so each wave is just a slot(index) into a bunch of parallel primitive arrays, instead of its own object.
+ * <br><br>
+ * Slots are always packed from 0 to {@link WavePool#size}. Dead waves are swap-removed(the last wave is moved into the dead wave's slot) after each tick,
+ * and the arrays are only ever grown, so new waves reuse old slots without allocating anything. A wave's slot can change between ticks, so don't hold onto slots!
+ * <br><br>
+ * Collisions & the block beneath each wave are read from the scanned {@link TerrainField}, instead of the world, so there's no VoxelShape or block lookups in the wave's movement.
+ * <br><br>
+ * The wave logic itself is the same total mess it always was, just working off of slots - i still dislike it a lot
+ */
+public class WavePool {
+    private static final double MAX_SQUARED_COLLISION_CHECK_DISTANCE = MathHelper.square(100.0);
+    private static final int INITIAL_CAPACITY = 64;
+    // below this many waves, ticking them in parallel isn't worth the overhead
+    private static final int PARALLEL_THRESHOLD = 128;
+
+    public static final int MAX_WASHING_AGE = 60;
+    public static final int MAX_WATER_AGE = 100;
+
+    // wave flags, packed into one int per wave
+    public static final int BIG_WAVE = 1;
+    public static final int DEAD = 1 << 1;
+    public static final int ABOVE_WATER = 1 << 2;
+    public static final int BENEATH_AIR = 1 << 3;
+    public static final int WASHING_UP = 1 << 4;
+    public static final int DROWNING_AWAY = 1 << 5;
+    public static final int HIT_BLOCK = 1 << 6;
+    public static final int ENDING = 1 << 7;
+    public static final int WATERFALL_MODE = 1 << 8;
+    public static final int WATERFALL_SPLASHED = 1 << 9;
+    public static final int PAST_DROP_OFF = 1 << 10;
+
+    //TODO - wave scales
+    //TODO - spary particle width
+    //TODO - fix fall washing up
+
+    public final ClientWorld world;
+    public final WetnessMap wetness;
+    // the latest scanned terrain - set before each tick
+    public TerrainField terrain = TerrainField.EMPTY;
+    public int size = 0;
+
+    // effects queued by the physics phase, spawned after on the main thread
+    private final Queue<WaveEffect> effects = new ConcurrentLinkedQueue<>();
+
+    // position(the bottom center of the wave's box) & last tick's position
+    public float[] x;
+    public float[] y;
+    public float[] z;
+    public float[] prevX;
+    public float[] prevY;
+    public float[] prevZ;
+
+    public float[] velX;
+    public float[] velY;
+    public float[] velZ;
+
+    public float[] yaw; //wave's yaw in degrees (in theory)
+    public float[] pitch;
+    public float[] scale;
+    public float[] width;
+    public float[] length;
+
+    public float[] red;
+    public float[] green;
+    public float[] blue;
+    public float[] alpha;
+
+    public int[] age;
+    public int[] maxAge;
+    public int[] ageUponWhichThisWaveHasOfficiallyJoinedEthoInBecomingWashedUp;
+    public int[] hitBlockAge;
+    public int[] flags;
+
+    public WavePool(ClientWorld world, WetnessMap wetness) {
+        this.world = world;
+        this.wetness = wetness;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds a new wave, reusing a free slot if there is one.
+     *
+     * @return The new wave's slot - only valid until the next tick
+     */
+    public int add(BlockPos spawnPos, float yaw, float yOffset, boolean bigWave) {
+        if (this.size == this.x.length) allocate(this.size * 2);
+        int i = this.size++;
+
+        this.yaw[i] = yaw;
+        this.flags[i] = ABOVE_WATER | (bigWave ? BIG_WAVE : 0);
+        if (bigWave) {
+            this.scale[i] = 3f;
+            this.length[i] = 1.5f;
+            this.width[i] = 1f;
+            this.maxAge[i] = 300;
+        } else {
+            this.scale[i] = 2f;
+            this.length[i] = 1f;
+            this.width[i] = 2f;
+            this.maxAge[i] = 250;
+        }
+
+        this.x[i] = this.prevX[i] = spawnPos.getX() + 0.5f;
+        this.y[i] = this.prevY[i] = spawnPos.getY() + Math.abs(yOffset) + 0.15f;
+        this.z[i] = this.prevZ[i] = spawnPos.getZ() + 0.5f;
+
+        float speed = 0.115f;
+        this.velX[i] = (float) (Math.cos(Math.toRadians(yaw)) * speed);
+        this.velY[i] = 0f;
+        this.velZ[i] = (float) (Math.sin(Math.toRadians(yaw)) * speed);
+
+        this.pitch[i] = 0f;
+        this.age[i] = 0;
+        this.ageUponWhichThisWaveHasOfficiallyJoinedEthoInBecomingWashedUp[i] = 0;
+        this.hitBlockAge[i] = 0;
+        this.red[i] = 1f;
+        this.green[i] = 1f;
+        this.blue[i] = 1f;
+        this.alpha[i] = 0f;
+        return i;
+    }
+
+    /**
+     * Ticks all waves in two phases, then swap-removes the dead ones.
+     * <br><br>
+     * The physics phase({@link WavePool#tickWave(int)}) only reads the {@link TerrainField} & writes to each wave's own slot - any particles are queued as {@link WaveEffect}s instead -
+     * so with enough waves, it runs in parallel on the fork-join pool. The effects phase then spawns the queued effects, updates wave colors & stamps wet blocks on the main thread, as those need the world or aren't thread-safe.
+     */
+    public void tick() {
+        int size = this.size;
+        // positions are only changed by moving, so last tick's position is just copied over in bulk
+        System.arraycopy(this.x, 0, this.prevX, 0, size);
+        System.arraycopy(this.y, 0, this.prevY, 0, size);
+        System.arraycopy(this.z, 0, this.prevZ, 0, size);
+
+        if (size >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, size).parallel().forEach(this::tickWave);
+        } else {
+            for (int i = 0; i < size; i++) {
+                tickWave(i);
+            }
+        }
+
+        tickEffects();
+        removeDead();
+    }
+
+    /**
+     * Spawns all queued effects, updates the water color of waves still in water, and stamps the blocks beneath washed up waves as wet.
+     */
+    private void tickEffects() {
+        WaveEffect effect;
+        while ((effect = this.effects.poll()) != null) {
+            effect.spawn(this.world);
+        }
+
+        for (int i = 0; i < this.size; i++) {
+            if (this.isDead(i)) continue;
+            if (this.isWashingUp(i)) {
+                this.stampWetness(i);
+            } else {
+                this.updateWaterColor(i);
+            }
+        }
+    }
+
+    /**
+     * Ticks one wave's physics - must not touch the world or any other wave, as waves can be ticked in parallel!
+     */
+    public void tickWave(int i) {
+        if (this.age[i]++ >= this.maxAge[i]) {
+            this.markDead(i);
+            return;
+        }
+
+        if (updateWashingUp(i)) { // wave has hit shore
+            if (this.getWashingAge(i) <= 10) { // just hit shore - immediate slowdown
+                this.velX[i] *= 0.875f;
+                this.velY[i] = -0.0005f;
+                this.velZ[i] *= 0.875f;
+            } else if (washBounce(i)) { // sometime after shore - slight bounce
+                this.velX[i] *= 1.2f;
+                this.velZ[i] *= 1.2f;
+            } else { // remaining time in shore - continue slowing down until despawn
+                this.velX[i] *= 0.9f;
+                this.velZ[i] *= 0.9f;
+            }
+
+            this.setFlag(i, ENDING, Math.abs(this.velX[i]) <= 0.03f && Math.abs(this.velZ[i]) <= 0.3f);
+
+            float addedLength = Math.abs(this.velX[i]) * (this.isBigWave(i) ? 1 : 0.75f);
+            this.length[i] += addedLength;
+            if (this.getWashingAge(i) >= MAX_WASHING_AGE) {
+                this.markDead(i);
+            }
+        } else {
+            if (this.hasFlag(i, DROWNING_AWAY)) { // wave is despawning in water because it didn't hit shore within reasonable time
+                this.length[i] -= 0.1f;
+                this.velY[i] -= 0.005f;
+                if (this.length[i] <= 0f) this.markDead(i);
+            }
+
+            if (this.alpha[i] < 1f) this.alpha[i] += 0.05f; //fade in
+        }
+
+        if (this.hasFlag(i, HIT_BLOCK) && this.age[i] - this.hitBlockAge[i] >= 2) {
+            this.markDead(i);
+        }
+
+        this.move(i, this.velX[i], this.velY[i], this.velZ[i]);
+        this.updateBeneathBlock(i);
+    }
+
+    /**
+     * Moves a wave, stopping it at any terrain in its way(see {@link TerrainField#getCollisionY(int, int)}) - checked along the y axis first, then x, then z, similar to entity collisions.
+     * Running into something sideways makes the wave spray.
+     */
+    public void move(int i, float velX, float velY, float velZ) {
+        float initVelX = velX;
+        float initVelZ = velZ;
+        if ((velX != 0.0 || velY != 0.0 || velZ != 0.0) && velX * velX + velY * velY + velZ * velZ < MAX_SQUARED_COLLISION_CHECK_DISTANCE) {
+            // same bounds as getHitBox, without the Box
+            double halfSize = 0.1 + this.scale[i] / 4f + 0.5;
+            double minX = this.x[i] - halfSize;
+            double maxX = this.x[i] + halfSize;
+            double minZ = this.z[i] - halfSize;
+            double maxZ = this.z[i] + halfSize;
+            double minY = this.y[i] - 0.5;
+            if (this.isWashingUp(i)) {
+                float yawRadians = (float) Math.toRadians(this.yaw[i]);
+                float usedLength = this.isBigWave(i) ? this.length[i] * 1.5f : this.length[i] / 16f;
+                double stretchX = usedLength * Math.cos(yawRadians);
+                double stretchZ = usedLength * Math.sin(yawRadians);
+                if (stretchX < 0) minX += stretchX; else maxX += stretchX;
+                if (stretchZ < 0) minZ += stretchZ; else maxZ += stretchZ;
+            }
+
+            velY = (float) this.clipY(minX, maxX, minZ, maxZ, minY, velY);
+            minY += velY;
+            velX = (float) this.clipHorizontal(minX, maxX, minZ, maxZ, minY, velX, false);
+            minX += velX;
+            maxX += velX;
+            velZ = (float) this.clipHorizontal(minZ, maxZ, minX, maxX, minY, velZ, true);
+        }
+
+        if (initVelX != velX || initVelZ != velZ) {
+            this.spray(i);
+        }
+
+        this.x[i] += velX;
+        this.y[i] += velY;
+        this.z[i] += velZ;
+    }
+
+    /**
+     * @return How far down the box can move before landing on a column - columns the box is already below are ignored, same as entity collisions
+     */
+    private double clipY(double minX, double maxX, double minZ, double maxZ, double minY, double velY) {
+        if (velY >= 0) return velY;
+        for (int z = MathHelper.floor(minZ); z <= MathHelper.floor(maxZ - 1.0E-7); z++) {
+            for (int x = MathHelper.floor(minX); x <= MathHelper.floor(maxX - 1.0E-7); x++) {
+                int collisionY = this.terrain.getCollisionY(x, z);
+                if (collisionY == TerrainField.UNKNOWN || collisionY > minY + 1.0E-7) continue;
+                velY = Math.max(velY, collisionY - minY);
+            }
+        }
+        return velY;
+    }
+
+    /**
+     * @param minA The box's min x(or z, if alongZ)
+     * @param maxA The box's max x(or z, if alongZ)
+     * @param minB The box's min z(or x, if alongZ)
+     * @param maxB The box's max z(or x, if alongZ)
+     * @return How far the box can move along the x(or z) axis before running into a column higher than the box's bottom
+     */
+    private double clipHorizontal(double minA, double maxA, double minB, double maxB, double minY, double vel, boolean alongZ) {
+        if (vel == 0) return vel;
+        int startB = MathHelper.floor(minB);
+        int endB = MathHelper.floor(maxB - 1.0E-7);
+
+        if (vel > 0) {
+            // only columns the box moves into - ones it already overlaps are ignored
+            for (int a = MathHelper.floor(maxA - 1.0E-7) + 1; a <= MathHelper.floor(maxA + vel - 1.0E-7); a++) {
+                if (this.blocksAlong(a, startB, endB, minY, alongZ)) return Math.max(0, a - maxA);
+            }
+        } else {
+            for (int a = MathHelper.floor(minA) - 1; a >= MathHelper.floor(minA + vel); a--) {
+                if (this.blocksAlong(a, startB, endB, minY, alongZ)) return Math.min(0, a + 1 - minA);
+            }
+        }
+        return vel;
+    }
+
+    private boolean blocksAlong(int a, int startB, int endB, double minY, boolean alongZ) {
+        for (int b = startB; b <= endB; b++) {
+            int collisionY = alongZ ? this.terrain.getCollisionY(b, a) : this.terrain.getCollisionY(a, b);
+            if (collisionY != TerrainField.UNKNOWN && collisionY > minY + 1.0E-7) return true;
+        }
+        return false;
+    }
+
+    // wave hit block and should spray - intensity depends on current speed & and if it was washing up
+    public void spray(int i) {
+        if (this.hasFlag(i, HIT_BLOCK)) return;
+
+        if (!this.hasFlag(i, DROWNING_AWAY)) {
+            float sprayIntensity;
+            if (this.isWashingUp(i)) {
+                sprayIntensity = getWashingAge(i) / 128f;
+                if (washBounce(i)) sprayIntensity *= 2f;
+            } else {
+                sprayIntensity = ((float) this.age[i] / this.maxAge[i]) * 2.5f / (this.age[i] / 16f);
+            }
+
+            double splashX = this.x[i] + this.velX[i] * 10;
+            double splashZ = this.z[i] + this.velZ[i] * 10;
+            this.effects.add(new WaveEffect.Spray(splashX, this.y[i], splashZ, this.yaw[i], sprayIntensity, this.scale[i], this.velX[i], this.velZ[i], this.isBigWave(i)));
+
+            this.velX[i] = 0;
+            this.velY[i] = 0;
+            this.velZ[i] = 0;
+        }
+
+
+        this.hitBlockAge[i] = this.age[i];
+        this.flags[i] |= HIT_BLOCK;
+    }
+
+    public boolean updateWashingUp(int i) {
+        if (!this.hasFlag(i, WASHING_UP) && !this.hasFlag(i, ABOVE_WATER) && !this.hasFlag(i, DROWNING_AWAY)) {
+            if (this.hasFlag(i, BENEATH_AIR)) {
+                this.velY[i] = MathHelper.clamp(this.velY[i] - 0.01f, -1.5f, 0);
+                // only tip over the edge of actual waterfalls - small steps down are just dropped onto
+                if (this.hasFlag(i, PAST_DROP_OFF)) {
+                    this.flags[i] |= WATERFALL_MODE;
+                    this.pitch[i] += 1 + Math.abs(this.velY[i]) * 5;
+                }
+            } else {
+                this.velY[i] = 0;
+                this.pitch[i] = 0;
+                this.flags[i] |= WASHING_UP;
+                this.ageUponWhichThisWaveHasOfficiallyJoinedEthoInBecomingWashedUp[i] = this.age[i];
+            }
+        }
+
+        if (this.hasFlag(i, WATERFALL_MODE) && this.hasFlag(i, ABOVE_WATER) && !this.hasFlag(i, WATERFALL_SPLASHED) && this.isInWater(i)) {
+            this.flags[i] |= WATERFALL_SPLASHED;
+            double splashX = this.x[i] + this.velX[i] * 3;
+            double splashZ = this.z[i] + this.velZ[i] * 3;
+            this.effects.add(new WaveEffect.WaterfallSplash(splashX, this.y[i], splashZ, this.width[i], this.isBigWave(i)));
+        }
+
+        if (!this.hasFlag(i, DROWNING_AWAY) && !this.hasFlag(i, WASHING_UP) && this.age[i] >= MAX_WATER_AGE) {
+            this.flags[i] |= DROWNING_AWAY;
+        }
+
+        return this.isWashingUp(i);
+    }
+
+    private boolean washBounce(int i) {
+        int washingAge = this.getWashingAge(i);
+        return washingAge >= 12 && washingAge <= 17;
+    }
+
+    /**
+     * Checks the block beneath a wave via the {@link TerrainField} - anything above a column's surface is air, and anything at or below the surface of a water column is water.
+     */
+    public void updateBeneathBlock(int i) {
+        int x = MathHelper.floor(this.x[i]);
+        int z = MathHelper.floor(this.z[i]);
+        int surfaceY = this.terrain.getSurfaceY(x, z);
+        if (surfaceY == TerrainField.UNKNOWN) return; // unscanned - keep what was beneath last tick
+
+        int beneathY = MathHelper.floor(this.y[i]) - 1;
+        this.setFlag(i, BENEATH_AIR, beneathY > surfaceY);
+        this.setFlag(i, ABOVE_WATER, beneathY <= surfaceY && this.terrain.isWater(x, z));
+        if (this.terrain.isDropOff(x, z)) this.flags[i] |= PAST_DROP_OFF;
+    }
+
+    /**
+     * @return If the wave's own block is water, going off of the {@link TerrainField}
+     */
+    public boolean isInWater(int i) {
+        int x = MathHelper.floor(this.x[i]);
+        int z = MathHelper.floor(this.z[i]);
+        return this.terrain.isWater(x, z) && MathHelper.floor(this.y[i]) <= this.terrain.getSurfaceY(x, z);
+    }
+
+    public void updateWaterColor(int i) {
+        int color = BiomeColors.getWaterColor(this.world, this.getBlockPos(i));
+        float r = (float) (color >> 16 & 0xFF) / 255.0F;
+        float g = (float) (color >> 8 & 0xFF) / 255.0F;
+        float b = (float) (color & 0xFF) / 255.0F;
+        this.setColor(i, r, g, b); // colorhelp here?
+    }
+
+    /**
+     * @param red   Float 0f through 1f
+     * @param green Float 0f through 1f
+     * @param blue  Float 0f through 255f - nah I'm just kidding its 0f through 1f
+     */
+    public void setColor(int i, @Range(from = 0, to = 1) float red, @Range(from = 0, to = 1) float green, @Range(from = 0, to = 1) float blue) {
+        this.red[i] = red;
+        this.green[i] = green;
+        this.blue[i] = blue;
+    }
+
+    /**
+     * Stamps the land blocks beneath a washed up wave into the {@link WetnessMap}, going off of the {@link TerrainField} - only blocks right beneath the wave get wet.
+     */
+    public void stampWetness(int i) {
+        int blockX = MathHelper.floor(this.x[i]);
+        int beneathY = MathHelper.floor(this.y[i]) - 1;
+        int blockZ = MathHelper.floor(this.z[i]);
+
+        boolean bigWave = this.isBigWave(i);
+        int extra = 0;
+        if (bigWave && this.getWashingAge(i) >= 13) {
+            extra = this.getWashingAge(i) <= 40 ? 3 : 1;
+        }
+        int usedWidth = (int) (this.width[i] - (bigWave ? 0 : 1)) + extra;
+        for (int z = blockZ - usedWidth; z <= blockZ + usedWidth; z++) {
+            for (int x = blockX - usedWidth; x <= blockX + usedWidth; x++) {
+                if (this.terrain.getSurfaceY(x, z) != beneathY || this.terrain.isWater(x, z)) continue;
+                this.wetness.stamp(BlockPos.asLong(x, beneathY, z));
+            }
+        }
+    }
+
+    /**
+     * @return The wave's box - it's always as big as its scale, and sits on top of the wave's position
+     */
+    public Box getBox(int i) {
+        double halfSize = 0.1 + this.scale[i] / 4f;
+        return new Box(this.x[i] - halfSize, this.y[i], this.z[i] - halfSize, this.x[i] + halfSize, this.y[i] + 0.2, this.z[i] + halfSize);
+    }
+
+    public Box getBoundingBox(int i) {
+        return this.getBox(i).expand(0.5);
+    }
+
+    public Box getHitBox(int i) {
+        if (this.isWashingUp(i)) {
+            float yawRadians = (float) Math.toRadians(this.yaw[i]); // this took way to long to figure out ( ͡ಠ ʖ̯ ͡ಠ)
+            float usedLength = this.isBigWave(i) ? this.length[i] * 1.5f : this.length[i] / 16f;
+            return this.getBoundingBox(i).stretch(usedLength * Math.cos(yawRadians), 0, usedLength * Math.sin(yawRadians));
+        }
+        return this.getBoundingBox(i);
+    }
+
+    public BlockPos getBlockPos(int i) {
+        return BlockPos.ofFloored(this.x[i], this.y[i], this.z[i]);
+    }
+
+    public float getX(int i, float delta) {
+        return MathHelper.lerp(delta, this.prevX[i], this.x[i]);
+    }
+
+    public float getY(int i, float delta) {
+        return MathHelper.lerp(delta, this.prevY[i], this.y[i]);
+    }
+
+    public float getZ(int i, float delta) {
+        return MathHelper.lerp(delta, this.prevZ[i], this.z[i]);
+    }
+
+    public int getWashingAge(int i) {
+        return this.age[i] - this.ageUponWhichThisWaveHasOfficiallyJoinedEthoInBecomingWashedUp[i];
+    }
+
+    public int getAge(int i) {
+        return this.isWashingUp(i) ? this.getWashingAge(i) : this.age[i];
+    }
+
+    public int getMaxAge(int i) {
+        return this.isWashingUp(i) ? MAX_WASHING_AGE : this.maxAge[i];
+    }
+
+    public int getLight(int i) {
+        //emissive during full moon :)
+        if (this.world.getMoonPhase() == 0 && this.world.getTimeOfDay() >= 12000)
+            return LightmapTextureManager.pack(15, 15);
+        BlockPos pos = this.getBlockPos(i).up();
+        int blockLight = this.world.getLightLevel(LightType.BLOCK, pos);
+        int skylight = this.world.getLightLevel(LightType.SKY, pos);
+        return LightmapTextureManager.pack(blockLight, skylight);
+    }
+
+    public boolean hasFlag(int i, int flag) {
+        return (this.flags[i] & flag) != 0;
+    }
+
+    public void setFlag(int i, int flag, boolean value) {
+        if (value) {
+            this.flags[i] |= flag;
+        } else {
+            this.flags[i] &= ~flag;
+        }
+    }
+
+    public boolean isBigWave(int i) {
+        return this.hasFlag(i, BIG_WAVE);
+    }
+
+    public boolean isWashingUp(int i) {
+        return this.hasFlag(i, WASHING_UP);
+    }
+
+    public void markDead(int i) {
+        this.flags[i] |= DEAD;
+    }
+
+    public boolean isDead(int i) {
+        return this.hasFlag(i, DEAD);
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Swap-removes all dead waves - the last wave is moved into each dead wave's slot, so removing is O(1) per wave, and the slots stay packed.
+     */
+    public void removeDead() {
+        int i = 0;
+        while (i < this.size) {
+            if (this.isDead(i)) {
+                this.copySlot(--this.size, i);
+                continue; // the moved wave could be dead too
+            }
+            i++;
+        }
+    }
+
+    public void clear() {
+        this.size = 0;
+        this.effects.clear();
+    }
+
+    private void copySlot(int from, int to) {
+        if (from == to) return;
+        this.x[to] = this.x[from];
+        this.y[to] = this.y[from];
+        this.z[to] = this.z[from];
+        this.prevX[to] = this.prevX[from];
+        this.prevY[to] = this.prevY[from];
+        this.prevZ[to] = this.prevZ[from];
+        this.velX[to] = this.velX[from];
+        this.velY[to] = this.velY[from];
+        this.velZ[to] = this.velZ[from];
+        this.yaw[to] = this.yaw[from];
+        this.pitch[to] = this.pitch[from];
+        this.scale[to] = this.scale[from];
+        this.width[to] = this.width[from];
+        this.length[to] = this.length[from];
+        this.red[to] = this.red[from];
+        this.green[to] = this.green[from];
+        this.blue[to] = this.blue[from];
+        this.alpha[to] = this.alpha[from];
+        this.age[to] = this.age[from];
+        this.maxAge[to] = this.maxAge[from];
+        this.ageUponWhichThisWaveHasOfficiallyJoinedEthoInBecomingWashedUp[to] = this.ageUponWhichThisWaveHasOfficiallyJoinedEthoInBecomingWashedUp[from];
+        this.hitBlockAge[to] = this.hitBlockAge[from];
+        this.flags[to] = this.flags[from];
+    }
+
+    private void allocate(int capacity) {
+        this.x = grow(this.x, capacity);
+        this.y = grow(this.y, capacity);
+        this.z = grow(this.z, capacity);
+        this.prevX = grow(this.prevX, capacity);
+        this.prevY = grow(this.prevY, capacity);
+        this.prevZ = grow(this.prevZ, capacity);
+        this.velX = grow(this.velX, capacity);
+        this.velY = grow(this.velY, capacity);
+        this.velZ = grow(this.velZ, capacity);
+        this.yaw = grow(this.yaw, capacity);
+        this.pitch = grow(this.pitch, capacity);
+        this.scale = grow(this.scale, capacity);
+        this.width = grow(this.width, capacity);
+        this.length = grow(this.length, capacity);
+        this.red = grow(this.red, capacity);
+        this.green = grow(this.green, capacity);
+        this.blue = grow(this.blue, capacity);
+        this.alpha = grow(this.alpha, capacity);
+        this.age = grow(this.age, capacity);
+        this.maxAge = grow(this.maxAge, capacity);
+        this.ageUponWhichThisWaveHasOfficiallyJoinedEthoInBecomingWashedUp = grow(this.ageUponWhichThisWaveHasOfficiallyJoinedEthoInBecomingWashedUp, capacity);
+        this.hitBlockAge = grow(this.hitBlockAge, capacity);
+        this.flags = grow(this.flags, capacity);
+    }
+
+    private static float[] grow(float[] array, int capacity) {
+        return array == null ? new float[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+    }
+}
@@ -0,0 +1,89 @@
+package net.superkat.tidal.wave;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMaps;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.util.math.MathHelper;
+import net.superkat.tidal.config.TidalConfig;
+
+/**
+ * Blocks(as longs via BlockPos#asLong) which have been covered by a washed up wave, and how many ticks they have left until they're dry again - used for rendering the wet overlay.
+ * <br><br>
+ * Waves stamp the blocks beneath them as they wash up(see {@link WavePool}), resetting each block's timer, and every {@link WetnessMap#DECAY_INTERVAL} ticks, all timers count down.
+ * Blocks are rendered less wet as their timer runs out, in {@link WetnessMap#LEVELS} steps - the overlay is only rebuilt when a block's level changes.
+ */
+public class WetnessMap {
+    public static final int LEVELS = 8;
+    public static final int DECAY_INTERVAL = 10;
+
+    private final Long2IntOpenHashMap wetTicks = new Long2IntOpenHashMap();
+    // if any block's level has changed since the overlay was last rebuilt
+    private boolean changed = false;
+
+    /**
+     * Marks a block as fully wet.
+     */
+    public void stamp(long pos) {
+        int maxTicks = TidalConfig.wetTicks;
+        if (maxTicks <= 0) return;
+        int oldTicks = this.wetTicks.put(pos, maxTicks);
+        if (getLevel(oldTicks) != LEVELS) this.changed = true;
+    }
+
+    /**
+     * Counts down all blocks' timers every {@link WetnessMap#DECAY_INTERVAL} ticks, removing blocks once they're dry.
+     */
+    public void tick(long time) {
+        if (this.wetTicks.isEmpty() || time % DECAY_INTERVAL != 0) return;
+
+        ObjectIterator<Long2IntMap.Entry> iterator = Long2IntMaps.fastIterator(this.wetTicks);
+        while (iterator.hasNext()) {
+            Long2IntMap.Entry entry = iterator.next();
+            int ticks = entry.getIntValue();
+            int newTicks = ticks - DECAY_INTERVAL;
+            if (newTicks <= 0) {
+                iterator.remove();
+                this.changed = true;
+                continue;
+            }
+
+            entry.setValue(newTicks);
+            if (getLevel(newTicks) != getLevel(ticks)) this.changed = true;
+        }
+    }
+
+    /**
+     * @return How wet a block is, from 0(dry) to {@link WetnessMap#LEVELS}(fully wet)
+     */
+    public static int getLevel(int ticks) {
+        int maxTicks = TidalConfig.wetTicks;
+        if (ticks <= 0 || maxTicks <= 0) return 0;
+        return MathHelper.clamp(Math.ceilDiv(ticks * LEVELS, maxTicks), 0, LEVELS);
+    }
+
+    /**
+     * @return All wet blocks & their ticks left - iterated without creating entries
+     */
+    public Iterable<Long2IntMap.Entry> entries() {
+        return Long2IntMaps.fastIterable(this.wetTicks);
+    }
+
+    /**
+     * @return If any block's level has changed since this was last called
+     */
+    public boolean pollChanged() {
+        boolean changed = this.changed;
+        this.changed = false;
+        return changed;
+    }
+
+    public boolean isEmpty() {
+        return this.wetTicks.isEmpty();
+    }
+
+    public void clear() {
+        if (!this.wetTicks.isEmpty()) this.changed = true;
+        this.wetTicks.clear();
+    }
+}
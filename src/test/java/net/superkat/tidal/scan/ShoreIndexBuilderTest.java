@@ -0,0 +1,62 @@
+package net.superkat.tidal.scan;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShoreIndexBuilderTest {
+
+    /**
+     * A chunk promoted from a lower level of detail gets all new sites. Water 2 chunks away(outside the chunks written by its reassignment) was closest to one of its old sites,
+     * and has to be reassigned too, instead of keeping the old site around.
+     */
+    @Test
+    public void promotedChunkLeavesNoOldSites() {
+        ShoreIndexBuilder builder = new ShoreIndexBuilder(null);
+        SitePos lodSite = new SitePos(new BlockPos(15, 62, 8));
+        builder.putChunk(waterChunk(0, 0, 4, lodSite));
+        builder.putChunk(waterChunk(1, 0, 1));
+        builder.putChunk(waterChunk(2, 0, 1));
+        builder.build();
+
+        WaterSiteChunk farChunk = builder.waterCache.get(ChunkPos.toLong(2, 0));
+        assertTrue(farChunk != null && palette(farChunk).contains(lodSite), "water 2 chunks away should start out closest to the LOD site");
+
+        // promoted to full detail - rescanned with a new site, without removing the old scan first
+        SitePos fullSite = new SitePos(new BlockPos(15, 62, 8));
+        builder.putChunk(waterChunk(0, 0, 1, fullSite));
+        builder.build();
+
+        Set<SitePos> liveSites = Collections.newSetFromMap(new IdentityHashMap<>());
+        liveSites.addAll(builder.getAllSites());
+        for (WaterSiteChunk siteChunk : builder.waterCache.values()) {
+            for (SitePos site : siteChunk.palette) {
+                assertTrue(liveSites.contains(site), "chunk " + new ChunkPos(siteChunk.chunkPos) + " still uses a removed site at " + site.getPos());
+            }
+        }
+        assertEquals(0, lodSite.count, "the old LOD site should have had all of its water removed");
+        assertTrue(palette(builder.waterCache.get(ChunkPos.toLong(2, 0))).contains(fullSite));
+    }
+
+    private static Set<SitePos> palette(WaterSiteChunk siteChunk) {
+        Set<SitePos> sites = Collections.newSetFromMap(new IdentityHashMap<>());
+        Collections.addAll(sites, siteChunk.palette);
+        return sites;
+    }
+
+    private static ScannedChunk waterChunk(int chunkX, int chunkZ, int stride, SitePos... sites) {
+        long[] waterMask = ColumnMask.create();
+        for (int i = 0; i < 256; i++) ColumnMask.set(waterMask, i);
+        short[] heights = new short[256];
+        Arrays.fill(heights, (short) 62);
+        return new ScannedChunk(new ChunkPos(chunkX, chunkZ), waterMask, ColumnMask.create(), ColumnMask.create(), ColumnMask.create(), heights, sites, stride);
+    }
+}